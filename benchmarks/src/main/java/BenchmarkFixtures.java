@@ -0,0 +1,62 @@
+package src.main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared setup helpers for the benchmarks
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Build the default topology of ten sites
+     * @return <key : siteId, value : site>
+     */
+    static Map<Integer, Site> sites() {
+        OutputPrinter outputPrinter = new OutputPrinter(false);
+        Map<Integer, Site> sites = new HashMap<>();
+        for (int i = 1; i <= 10; i++) {
+            sites.put(i, new Site(i, outputPrinter));
+        }
+        return sites;
+    }
+
+    /**
+     * Generate a trace of short read-write transactions over the default twenty variables, four of them in flight at a time
+     * @param operations the number of lines to generate
+     * @param skew the zipfian skew of the variable choice, 0 for uniform
+     * @param seed the random seed
+     * @return the trace in the text syntax accepted by Database
+     */
+    static String trace(int operations, double skew, long seed) {
+        return trace(operations, skew, seed, false);
+    }
+
+    /**
+     * Generate the same trace as {@link #trace(int, double, long)}, optionally with the access sets declared at begin
+     * @param operations the number of lines to generate
+     * @param skew the zipfian skew of the variable choice, 0 for uniform
+     * @param seed the random seed
+     * @param declareAccess whether read-write transactions declare their read and write sets
+     * @return the trace in the text syntax accepted by Database
+     */
+    static String trace(int operations, double skew, long seed, boolean declareAccess) {
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        generator.setOperations(operations);
+        generator.setSkew(skew);
+        generator.setDeclareAccess(declareAccess);
+        generator.setLength(LengthDistribution.UNIFORM, 1, 6, 0);
+        StringBuilder builder = new StringBuilder();
+        try {
+            generator.generate(builder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
+}
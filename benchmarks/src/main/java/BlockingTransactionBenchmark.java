@@ -0,0 +1,61 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the starvation check that scans the pending list before every lock acquisition
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BlockingTransactionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int pendingOperations;
+
+    TransactionManager transactionManager;
+    Operation readOperation;
+    Operation writeOperation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transactionManager = new TransactionManager(BenchmarkFixtures.sites(), new OutputPrinter(false));
+        int time = 0;
+
+        // T1 write locks every replicated variable
+        transactionManager.handleNewRequest(new Operation(OperationType.BEGIN, 1, ++time), time);
+        for (int variableId = 2; variableId <= 20; variableId += 2) {
+            transactionManager.handleNewRequest(new Operation(OperationType.WRITE, 1, variableId, 0, ++time), time);
+        }
+
+        // every other transaction is queued behind T1 with a read or a write
+        for (int transactionId = 2; transactionId < pendingOperations + 2; transactionId++) {
+            int variableId = 2 + 2 * (transactionId % 10);
+            transactionManager.handleNewRequest(new Operation(OperationType.BEGIN, transactionId, ++time), time);
+            if (transactionId % 3 == 0) {
+                transactionManager.handleNewRequest(new Operation(OperationType.WRITE, transactionId, variableId, 0, ++time), time);
+            } else {
+                transactionManager.handleNewRequest(new Operation(OperationType.READ, transactionId, variableId, ++time), time);
+            }
+        }
+
+        readOperation = new Operation(OperationType.READ, pendingOperations + 2, 2, ++time);
+        writeOperation = new Operation(OperationType.WRITE, pendingOperations + 2, 2, 0, ++time);
+    }
+
+    @Benchmark
+    public Set<Integer> blockingRead() {
+        return transactionManager.getBlockingTransaction(readOperation);
+    }
+
+    @Benchmark
+    public Set<Integer> blockingWrite() {
+        return transactionManager.getBlockingTransaction(writeOperation);
+    }
+}
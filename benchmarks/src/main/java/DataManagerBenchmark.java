@@ -0,0 +1,63 @@
+package src.main.java;
+
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the snapshot lookup of read-only transactions against commit histories of different lengths, with every version
+ * on the heap (heapVersions 0) or only the recent ones, the old snapshots then being read from the memory-mapped segment
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataManagerBenchmark {
+
+    @Param({"1", "16", "256", "4096"})
+    int historyLength;
+
+    @Param({"0", "64"})
+    int heapVersions;
+
+    DataManager dataManager;
+    int oldTimestamp;
+    int middleTimestamp;
+    int latestTimestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataManager = new DataManager(1);
+        if (heapVersions > 0) {
+            dataManager.setHeapVersions(heapVersions);
+        }
+        for (int time = 1; time <= historyLength; time++) {
+            Map<Integer, Integer> updatedVariables = new HashMap<>();
+            updatedVariables.put(2, time);
+            dataManager.commitVariables(time, updatedVariables);
+        }
+        oldTimestamp = 1;
+        middleTimestamp = historyLength / 2 + 1;
+        latestTimestamp = historyLength + 1;
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> snapshotOld() {
+        return dataManager.getSnapshot(2, oldTimestamp);
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> snapshotMiddle() {
+        return dataManager.getSnapshot(2, middleTimestamp);
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> snapshotLatest() {
+        return dataManager.getSnapshot(2, latestTimestamp);
+    }
+}
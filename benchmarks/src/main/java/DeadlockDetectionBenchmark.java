@@ -0,0 +1,58 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cycle search on waits-for graphs of different sizes, with and without a cycle
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeadlockDetectionBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int transactions;
+
+    TransactionManager transactionManager;
+    Map<Integer, Set<Integer>> acyclicGraph;
+    Map<Integer, Set<Integer>> cyclicGraph;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transactionManager = new TransactionManager(BenchmarkFixtures.sites(), new OutputPrinter(false));
+        Random random = new Random(42);
+
+        // every transaction waits for up to three older transactions, which can never form a cycle
+        acyclicGraph = new HashMap<>();
+        for (int source = 2; source <= transactions; source++) {
+            Set<Integer> destinations = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                destinations.add(1 + random.nextInt(source - 1));
+            }
+            acyclicGraph.put(source, destinations);
+        }
+
+        // the oldest transaction waiting for the youngest one closes a cycle
+        cyclicGraph = new HashMap<>();
+        for (int source : acyclicGraph.keySet()) {
+            cyclicGraph.put(source, new HashSet<>(acyclicGraph.get(source)));
+        }
+        cyclicGraph.put(1, new HashSet<>(Collections.singleton(transactions)));
+    }
+
+    @Benchmark
+    public Set<Integer> detectWithoutCycle() {
+        return transactionManager.detect(acyclicGraph);
+    }
+
+    @Benchmark
+    public Set<Integer> detectWithCycle() {
+        return transactionManager.detect(cyclicGraph);
+    }
+}
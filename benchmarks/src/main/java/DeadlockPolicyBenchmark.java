@@ -0,0 +1,58 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the deadlock policies on the same contended trace: the score is the throughput of whole traces,
+ * and the commits and aborts counters give the abort rate of each policy
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DeadlockPolicyBenchmark {
+
+    @Param({"detection", "wound-wait", "wait-die", "timeout:5"})
+    String policy;
+
+    @Param({"0.0", "0.99"})
+    double skew;
+
+    String trace;
+
+    /**
+     * commits and aborts summed over all the traces of an iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long commits;
+        public long aborts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+            aborts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trace = BenchmarkFixtures.trace(1000, skew, 42);
+    }
+
+    @Benchmark
+    public Database simulate(Outcomes outcomes) {
+        Database database = new Database(false);
+        database.setDeadlockPolicy(DeadlockPolicy.fromName(policy));
+        database.process(new Scanner(trace));
+        outcomes.commits += database.transactionManager.getCommitCount();
+        outcomes.aborts += database.transactionManager.getAbortCount();
+        return database;
+    }
+}
@@ -0,0 +1,57 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares incremental locking with conservative locking of declared access sets on the same trace: the score is the
+ * throughput of whole traces, and the commits and aborts counters give the abort rate of each
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DeclaredAccessBenchmark {
+
+    @Param({"false", "true"})
+    boolean declared;
+
+    @Param({"0.0", "0.99"})
+    double skew;
+
+    String trace;
+
+    /**
+     * commits and aborts summed over all the traces of an iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long commits;
+        public long aborts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+            aborts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trace = BenchmarkFixtures.trace(1000, skew, 42, declared);
+    }
+
+    @Benchmark
+    public Database simulate(Outcomes outcomes) {
+        Database database = new Database(false);
+        database.process(new Scanner(trace));
+        outcomes.commits += database.transactionManager.getCommitCount();
+        outcomes.aborts += database.transactionManager.getAbortCount();
+        return database;
+    }
+}
@@ -0,0 +1,64 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures acquiring read and write locks on a lock table of a given size and releasing them all at once
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LockManagerBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int variables;
+
+    LockManager lockManager;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        lockManager = new LockManager();
+        // other transactions already hold read locks on every variable, so the table is fully populated
+        for (int variableId = 1; variableId <= variables; variableId++) {
+            lockManager.acquireLock(-1, variableId, LockType.READ);
+        }
+    }
+
+    @Benchmark
+    public void acquireReadLocksAndRelease(Blackhole blackhole) {
+        for (int variableId = 1; variableId <= variables; variableId++) {
+            blackhole.consume(lockManager.acquireLock(1, variableId, LockType.READ));
+        }
+        lockManager.releaseAllLocks(1);
+    }
+
+    @Benchmark
+    public void acquireConflictingWriteLock(Blackhole blackhole) {
+        blackhole.consume(lockManager.acquireLock(1, variables, LockType.WRITE));
+    }
+
+    /**
+     * the read locks transaction 1 holds on every variable before each release, taken outside of the measured time
+     */
+    @State(Scope.Thread)
+    public static class HeldLocks {
+
+        @Setup(Level.Invocation)
+        public void acquire(LockManagerBenchmark benchmark) {
+            for (int variableId = 1; variableId <= benchmark.variables; variableId++) {
+                benchmark.lockManager.acquireLock(1, variableId, LockType.READ);
+            }
+        }
+    }
+
+    @Benchmark
+    public void releaseAllLocks(HeldLocks heldLocks) {
+        lockManager.releaseAllLocks(1);
+    }
+}
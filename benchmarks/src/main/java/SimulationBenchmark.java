@@ -0,0 +1,38 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end throughput of parsing and executing a generated trace on a fresh database, with uniform and skewed keys
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulationBenchmark {
+
+    @Param({"1000", "10000"})
+    int operations;
+
+    @Param({"0.0", "0.99"})
+    double skew;
+
+    String trace;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        trace = BenchmarkFixtures.trace(operations, skew, 42);
+    }
+
+    @Benchmark
+    public Database simulate() {
+        Database database = new Database(false);
+        database.process(new Scanner(trace));
+        return database;
+    }
+}
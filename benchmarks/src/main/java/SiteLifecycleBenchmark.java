@@ -0,0 +1,50 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating the data manager of a site and failing and recovering it, for placements of different sizes where the
+ * workload touched only a few variables
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SiteLifecycleBenchmark {
+    private static final int TOUCHED = 16;
+
+    @Param({"1000", "1000000"})
+    int variables;
+
+    Map<Integer, DataInfo> dataLocation;
+    DataManager dataManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataLocation = new HashMap<>();
+        for (int variableId = 1; variableId <= variables; variableId++) {
+            dataLocation.put(variableId, new DataInfo(variableId, DataType.REPLICATED, Arrays.asList(1, 2, 3)));
+        }
+        dataManager = new DataManager(1, dataLocation);
+        for (int variableId = 1; variableId <= TOUCHED; variableId++) {
+            dataManager.commitVariable(0, variableId, variableId);
+        }
+    }
+
+    @Benchmark
+    public DataManager construct() {
+        return new DataManager(1, dataLocation);
+    }
+
+    @Benchmark
+    public boolean failAndRecover() {
+        dataManager.setAllDataUnavailable();
+        dataManager.setAllNonReplicatedDataAvailable();
+        return dataManager.readAvailable(1);
+    }
+}
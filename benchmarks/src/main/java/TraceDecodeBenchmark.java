@@ -0,0 +1,68 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast the commands of a generated trace are decoded, parsing the text lines versus reading the binary trace
+ * from a mapped file, without executing them
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TraceDecodeBenchmark {
+
+    @Param({"100000"})
+    int operations;
+
+    String[] lines;
+    File binaryTrace;
+    TraceParser parser;
+    TraceCommand command;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File textTrace = File.createTempFile("trace", ".txt");
+        binaryTrace = File.createTempFile("trace", ".rct");
+        String trace = BenchmarkFixtures.trace(operations, 0.0, 42);
+        lines = trace.split("\n");
+        Files.write(textTrace.toPath(), trace.getBytes());
+        TraceConverter.toBinary(textTrace, binaryTrace);
+        textTrace.delete();
+        parser = new TraceParser();
+        command = new TraceCommand();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        binaryTrace.delete();
+    }
+
+    @Benchmark
+    public long parseText() {
+        long checksum = 0;
+        for (String line : lines) {
+            parser.parse(line, command);
+            checksum += command.getTransactionId();
+        }
+        return checksum;
+    }
+
+    @Benchmark
+    public long readBinary() throws IOException {
+        long checksum = 0;
+        try (BinaryTraceReader reader = new BinaryTraceReader(binaryTrace)) {
+            while (reader.next(command)) {
+                checksum += command.getTransactionId();
+            }
+        }
+        return checksum;
+    }
+}
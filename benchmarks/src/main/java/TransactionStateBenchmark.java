@@ -0,0 +1,48 @@
+package src.main.java;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-operation bookkeeping of a transaction: caching reads and writes, taking and checking locks, and recording
+ * the accessed sites, on a transaction that already touched a few variables. gc.alloc.rate.norm should stay at zero.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TransactionStateBenchmark {
+    private static final int VARIABLES = 20;
+
+    Transaction transaction;
+    int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        transaction = new Transaction(1, 0, TransactionType.READ_WRITE);
+        for (int variableId = 1; variableId <= VARIABLES; variableId++) {
+            transaction.addLock(variableId % 2 == 0 ? LockType.WRITE : LockType.READ, variableId);
+            transaction.cache(variableId, 10 * variableId);
+            transaction.addAccessedSite(variableId, 1 + variableId % 10);
+        }
+    }
+
+    @Benchmark
+    public int readCachedAndCheckLock() {
+        int variableId = 1 + next++ % VARIABLES;
+        int value = transaction.hasCached(variableId) ? transaction.read(variableId) : 0;
+        return transaction.isHoldingLock(LockType.WRITE, variableId) ? value : -value;
+    }
+
+    @Benchmark
+    public boolean writeUnderLock() {
+        int variableId = 1 + next++ % VARIABLES;
+        transaction.addLock(LockType.WRITE, variableId);
+        transaction.cache(variableId, next);
+        transaction.addAccessedSite(next, 1 + variableId % 10);
+        return transaction.hasAccessed(1 + variableId % 10);
+    }
+}
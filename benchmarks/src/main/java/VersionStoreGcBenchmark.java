@@ -0,0 +1,75 @@
+package src.main.java;
+
+import javafx.util.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the GC cost of keeping the data copies on the heap or in direct buffers, on ten sites that all hold a copy of every
+ * variable. fullGc measures the pause of a full collection with the copies alive, commitAndRead the steady state, where the
+ * GC profiler reports the collection time (gc.time) next to the score.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+@State(Scope.Thread)
+public class VersionStoreGcBenchmark {
+    private static final int SITES = 10;
+
+    @Param({"heap", "offheap"})
+    String store;
+
+    @Param({"200000"})
+    int variables;
+
+    List<DataManager> dataManagers;
+    Random random;
+    int time;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Integer> siteIds = new ArrayList<>();
+        for (int siteId = 1; siteId <= SITES; siteId++) {
+            siteIds.add(siteId);
+        }
+        Map<Integer, DataInfo> dataLocation = new HashMap<>();
+        for (int variableId = 1; variableId <= variables; variableId++) {
+            dataLocation.put(variableId, new DataInfo(variableId, DataType.REPLICATED, siteIds));
+        }
+        dataManagers = new ArrayList<>();
+        for (int siteId : siteIds) {
+            VersionStore versionStore = store.equals("offheap") ? new OffHeapVersionStore() : new HeapVersionStore();
+            DataManager dataManager = new DataManager(siteId, dataLocation, versionStore);
+            // copies are created at their first commit, commit every variable once so that all of them are alive
+            for (int variableId = 1; variableId <= variables; variableId++) {
+                dataManager.commitVariable(0, variableId, variableId);
+            }
+            dataManagers.add(dataManager);
+        }
+        random = new Random(7);
+        time = 0;
+    }
+
+    @Benchmark
+    public Pair<Integer, Integer> commitAndRead() {
+        time++;
+        int variableId = 1 + random.nextInt(variables);
+        for (DataManager dataManager : dataManagers) {
+            dataManager.commitVariable(time, variableId, time);
+        }
+        return dataManagers.get(time % SITES).getSnapshot(1 + random.nextInt(variables), time - random.nextInt(100));
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullGc() {
+        System.gc();
+    }
+}
@@ -0,0 +1,155 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * changes the number of copies of each variable from its access rates
+ * The reads and writes of every variable are counted per window of ticks, and the rates are smoothed over the windows (each
+ * window weighs half). At the end of a window, a variable that is mostly read gets twice as many copies, up to one per site that
+ * is up, so its reads spread over more sites. A variable that is mostly written keeps half of its copies, down to one, so its
+ * writes lock and commit fewer copies. The new copies are added on the sites following the first one, and the first one is
+ * always kept. The changes go through the moves of the transaction manager, so the copies move only when the variable is not in use.
+ */
+public class AdaptiveReplication {
+    // a variable accessed less often than this per window is left as it is
+    private static final double MIN_RATE = 2;
+    // the share of reads above which a variable gets more copies
+    private static final double GROW_READ_SHARE = 0.9;
+    // the share of writes above which a variable loses copies
+    private static final double SHRINK_WRITE_SHARE = 0.5;
+
+    private final int window;   // ticks per window
+    private int windowStart;
+    private Map<Integer, double[]> statistics;  // <key : variableId, value : {reads this window, writes this window, read rate, write rate}>
+    private List<ReplicationDecision> decisions;
+    private int replicasAdded;
+    private int replicasRemoved;
+
+    /**
+     * @param window the number of ticks per window
+     */
+    public AdaptiveReplication(int window) {
+        this.window = window;
+        this.windowStart = 0;
+        this.statistics = new HashMap<>();
+        this.decisions = new ArrayList<>();
+    }
+
+    /**
+     * Count a read of a variable
+     * side effect: will change statistics
+     * @param variableId the variable id
+     */
+    public void recordRead(int variableId) {
+        statistics.computeIfAbsent(variableId, id -> new double[4])[0]++;
+    }
+
+    /**
+     * Count a write of a variable
+     * side effect: will change statistics
+     * @param variableId the variable id
+     */
+    public void recordWrite(int variableId) {
+        statistics.computeIfAbsent(variableId, id -> new double[4])[1]++;
+    }
+
+    /**
+     * At the end of a window, update the rates and choose the new sites of the variables whose replication should change
+     * side effect: will change statistics and decisions at the end of a window
+     * @param currentTime the current time
+     * @param dataLocation <key : variableId, value : data distribution information>
+     * @param sites <key : siteId, value : site>
+     * @param movingVariables the variables that already wait to move, they are left as they are
+     * @return <key : variableId, value : the new data distribution information>, empty if nothing changes
+     */
+    public SortedMap<Integer, DataInfo> decide(int currentTime, Map<Integer, DataInfo> dataLocation, Map<Integer, Site> sites, Set<Integer> movingVariables) {
+        SortedMap<Integer, DataInfo> targets = new TreeMap<>();
+        if (currentTime - windowStart < window) {
+            return targets;
+        }
+        windowStart = currentTime;
+        for (double[] counts : statistics.values()) {
+            counts[2] = (counts[2] + counts[0]) / 2;
+            counts[3] = (counts[3] + counts[1]) / 2;
+            counts[0] = 0;
+            counts[1] = 0;
+        }
+
+        List<Integer> upSites = new ArrayList<>();
+        for (int siteId : new TreeSet<>(sites.keySet())) {
+            if (sites.get(siteId).isUp()) {
+                upSites.add(siteId);
+            }
+        }
+
+        for (int variableId : new TreeSet<>(statistics.keySet())) {
+            double[] counts = statistics.get(variableId);
+            double readRate = counts[2];
+            double writeRate = counts[3];
+            DataInfo current = dataLocation.get(variableId);
+            if (current == null || movingVariables.contains(variableId) || readRate + writeRate < MIN_RATE
+                    || !upSites.containsAll(current.getAvailableSites())) {
+                continue;
+            }
+
+            List<Integer> oldSites = current.getAvailableSites();
+            List<Integer> newSites;
+            if (readRate >= GROW_READ_SHARE * (readRate + writeRate) && oldSites.size() < upSites.size()) {
+                newSites = addSites(oldSites, Math.min(upSites.size(), oldSites.size() * 2), upSites);
+                replicasAdded += newSites.size() - oldSites.size();
+            } else if (writeRate >= SHRINK_WRITE_SHARE * (readRate + writeRate) && oldSites.size() > 1) {
+                newSites = new ArrayList<>(oldSites.subList(0, oldSites.size() / 2));
+                replicasRemoved += oldSites.size() - newSites.size();
+            } else {
+                continue;
+            }
+            DataType type = newSites.size() > 1 ? DataType.REPLICATED : DataType.NOT_REPLICATED;
+            targets.put(variableId, new DataInfo(variableId, type, newSites));
+            decisions.add(new ReplicationDecision(currentTime, variableId, oldSites, newSites, readRate, writeRate));
+        }
+        return targets;
+    }
+
+    /**
+     * Helper method for adding copies on the up sites that follow the first site of a variable
+     * @param oldSites the sites holding the variable
+     * @param copies the number of copies wanted
+     * @param upSites the sites that are up, in ascending order
+     * @return the old sites followed by the new ones
+     */
+    private List<Integer> addSites(List<Integer> oldSites, int copies, List<Integer> upSites) {
+        List<Integer> newSites = new ArrayList<>(oldSites);
+        int first = upSites.indexOf(oldSites.get(0));
+        for (int i = 1; i < upSites.size() && newSites.size() < copies; i++) {
+            int siteId = upSites.get((first + i) % upSites.size());
+            if (!newSites.contains(siteId)) {
+                newSites.add(siteId);
+            }
+        }
+        return newSites;
+    }
+
+    /**
+     * Getter of the decisions made so far
+     * @return the decisions in the order they were made
+     */
+    public List<ReplicationDecision> getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * Getter of the number of copies added
+     * @return the copies added by all the decisions
+     */
+    public int getReplicasAdded() {
+        return replicasAdded;
+    }
+
+    /**
+     * Getter of the number of copies removed
+     * @return the copies removed by all the decisions
+     */
+    public int getReplicasRemoved() {
+        return replicasRemoved;
+    }
+}
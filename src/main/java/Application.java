@@ -2,29 +2,168 @@ package src.main.java;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public class Application {
+    // the options that are followed by a value
+    private static final List<String> OPTIONS_WITH_VALUE = Arrays.asList("-policy", "-mode", "-server", "-placement", "-heap-versions", "-load", "-pipeline");
+
     public static void main(String[] args) {
-        boolean verbose = false;
+        // batch mode runs many trace files in this JVM
+        if (Arrays.asList(args).contains("-batch")) {
+            try {
+                if (!BatchRunner.runBatch(args)) {
+                    System.exit(1);
+                }
+            } catch (IOException e) {
+                System.out.println("Batch failed: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
         String fileName = null;
-        for (String arg : args) {
-            if (arg.equals("-v")) {
-                verbose = true;
-            } else {
-                fileName = arg;
+        Integer port = null;
+        boolean statistics = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-stats")) {
+                statistics = true;
+            } else if (args[i].equals("-server")) {
+                port = Integer.parseInt(args[++i]);
+            } else if (takesValue(args[i])) {
+                i++;
+            } else if (!args[i].startsWith("-")) {
+                fileName = args[i];
             }
         }
-        Database db = new Database(verbose);
+        Database db = createDatabase(args);
+
+        // server mode accepts commands from TCP clients on the loopback interface
+        if (port != null) {
+            try {
+                DatabaseServer server = new DatabaseServer(db, port);
+                System.out.println("Listening on port " + server.getPort());
+                server.serve();
+            } catch (IOException e) {
+                System.out.println("Server failed: " + e.getMessage());
+            } finally {
+                db.close();
+            }
+            return;
+        }
+
         try {
+            long start = System.nanoTime();
             if (fileName != null) {
                 System.out.println(fileName);
-                db.simulate(new File(fileName));
+                File file = new File(fileName);
+                // a binary trace is replayed from the mapped file, see TraceConverter
+                if (file.isFile() && BinaryTraceReader.isBinary(file)) {
+                    db.replay(file);
+                } else {
+                    db.simulate(file);
+                }
             } else {
                 db.simulate(null);
             }
+            if (statistics) {
+                db.printStatistics(System.nanoTime() - start);
+            }
         } catch (FileNotFoundException e) {
             System.out.println("File not found");
+        } catch (IOException e) {
+            System.out.println("Replay failed: " + e.getMessage());
+        } finally {
+            db.close();
         }
     }
-}
 
+    /**
+     * Create a database configured by the engine options among the arguments, the other arguments are ignored
+     * engine options: -v, -policy detection|wound-wait|wait-die|timeout:<ticks>, -mode locking|occ|si, -doom, -adaptive, -heap-versions <n>, -offheap, -load <file>,
+     * -pipeline on|off, -placement default|modulo[:replicas]|range[:replicas]|hash[:replicas[:virtual nodes]]
+     * @param args the command line arguments
+     * @return the database
+     */
+    static Database createDatabase(String[] args) {
+        boolean verbose = false;
+        DeadlockPolicy deadlockPolicy = null;
+        ConcurrencyMode concurrencyMode = null;
+        boolean proactiveAbort = false;
+        boolean adaptive = false;
+        int heapVersions = 0;
+        BulkLoader bulkLoader = null;
+        boolean offHeap = false;
+        PlacementPolicy placementPolicy = new DefaultPlacement();
+        Boolean pipelined = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-v")) {
+                verbose = true;
+            } else if (args[i].equals("-doom")) {
+                proactiveAbort = true;
+            } else if (args[i].equals("-adaptive")) {
+                adaptive = true;
+            } else if (args[i].equals("-load")) {
+                try {
+                    bulkLoader = BulkLoader.read(new File(args[++i]));
+                } catch (IOException e) {
+                    throw new IllegalArgumentException("can not read the load file " + args[i], e);
+                }
+            } else if (args[i].equals("-offheap")) {
+                offHeap = true;
+            } else if (args[i].equals("-pipeline")) {
+                String value = args[++i];
+                if (!value.equals("on") && !value.equals("off")) {
+                    throw new IllegalArgumentException("-pipeline takes on or off, not " + value);
+                }
+                pipelined = value.equals("on");
+            } else if (args[i].equals("-heap-versions")) {
+                heapVersions = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-placement")) {
+                placementPolicy = PlacementPolicy.fromName(args[++i]);
+            } else if (args[i].equals("-policy")) {
+                deadlockPolicy = DeadlockPolicy.fromName(args[++i]);
+            } else if (args[i].equals("-mode")) {
+                concurrencyMode = ConcurrencyMode.fromName(args[++i]);
+            } else if (takesValue(args[i])) {
+                i++;
+            }
+        }
+
+        // the loaded file may hold more than the twenty variables
+        int variableCount = bulkLoader == null ? 20 : Math.max(20, bulkLoader.getMaxVariableId());
+        Database db = new Database(verbose, placementPolicy, variableCount);
+        if (bulkLoader != null) {
+            db.load(bulkLoader);
+        }
+        if (deadlockPolicy != null) {
+            db.setDeadlockPolicy(deadlockPolicy);
+        }
+        if (concurrencyMode != null) {
+            db.setConcurrencyMode(concurrencyMode);
+        }
+        db.setProactiveAbort(proactiveAbort);
+        db.setAdaptiveReplication(adaptive);
+        if (offHeap) {
+            db.setOffHeap(true);
+        }
+        if (heapVersions > 0) {
+            db.setHeapVersions(heapVersions);
+        }
+        if (pipelined != null) {
+            db.setPipelined(pipelined);
+        }
+        return db;
+    }
+
+    /**
+     * Check whether a command line option is followed by a value
+     * @param arg the argument
+     * @return true if the next argument is the value of this option
+     */
+    static boolean takesValue(String arg) {
+        return OPTIONS_WITH_VALUE.contains(arg);
+    }
+}
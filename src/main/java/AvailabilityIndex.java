@@ -0,0 +1,205 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * the availability of every copy as bitsets, kept by the transaction manager so that choosing a replica takes a few bit operations
+ * Site i is bit i - 1 of a long, so at most 64 sites are supported. For every variable, the index keeps the sites holding it and the
+ * sites where it was committed or moved since their last failure. A copy is readable if its site is up and the site never failed,
+ * the copy is the only one, or it was committed since the failure, the same rule the data managers apply.
+ * The index is updated by the failure, recovery, commit and move events. A failure clears the bit of the site in every variable.
+ */
+public class AvailabilityIndex {
+    public static final int MAX_SITES = 64;
+
+    private long upSites;   // the sites that are up
+    private long neverFailedSites;  // the sites that never failed, all their copies are readable while they are up
+    private long[] holders;     // <index : variableId, value : the sites holding a copy>
+    private long[] committedSinceFailure;   // <index : variableId, value : the sites where the copy was committed or moved since their last failure>
+    private BitSet notReplicated;   // the variables with a single copy, readable as soon as their site is up
+    private byte[] firstSite;   // <index : variableId, value : the bit of the first site of the variable>
+    private Map<Integer, int[]> irregularOrders;    // <key : variableId, value : its sites, when they are not in ascending order from the first one>
+
+    /**
+     * Build the index of a placement, every site being up and never failed
+     * @param dataLocation <key : variableId, value : data distribution information>
+     * @param siteIds the sites
+     */
+    public AvailabilityIndex(Map<Integer, DataInfo> dataLocation, Collection<Integer> siteIds) {
+        int maxVariableId = 0;
+        for (int variableId : dataLocation.keySet()) {
+            maxVariableId = Math.max(maxVariableId, variableId);
+        }
+        holders = new long[maxVariableId + 1];
+        committedSinceFailure = new long[maxVariableId + 1];
+        notReplicated = new BitSet(maxVariableId + 1);
+        firstSite = new byte[maxVariableId + 1];
+        irregularOrders = new HashMap<>();
+        for (int siteId : siteIds) {
+            addSite(siteId);
+        }
+        for (DataInfo dataInfo : dataLocation.values()) {
+            place(dataInfo);
+        }
+    }
+
+    /**
+     * Getting the bit of a site
+     * @param siteId the site id, from 1 to 64
+     * @return the mask with only the bit of the site set
+     */
+    public static long bit(int siteId) {
+        if (siteId < 1 || siteId > MAX_SITES) {
+            throw new IllegalArgumentException("site " + siteId + " is out of 1.." + MAX_SITES);
+        }
+        return 1L << (siteId - 1);
+    }
+
+    /**
+     * Start tracking a new site, which is up
+     * side effect: will change upSites and neverFailedSites
+     * @param siteId the site id
+     */
+    public void addSite(int siteId) {
+        upSites |= bit(siteId);
+        neverFailedSites |= bit(siteId);
+    }
+
+    /**
+     * Record the failure of a site, none of its replicated copies is readable until committed again
+     * side effect: will change upSites, neverFailedSites and committedSinceFailure
+     * @param siteId the site id
+     */
+    public void siteFailed(int siteId) {
+        long clear = ~bit(siteId);
+        upSites &= clear;
+        neverFailedSites &= clear;
+        for (int variableId = 0; variableId < committedSinceFailure.length; variableId++) {
+            committedSinceFailure[variableId] &= clear;
+        }
+    }
+
+    /**
+     * Record the recovery of a site
+     * side effect: will change upSites
+     * @param siteId the site id
+     */
+    public void siteRecovered(int siteId) {
+        upSites |= bit(siteId);
+    }
+
+    /**
+     * Record the variables committed on a site, which become readable there
+     * side effect: will change committedSinceFailure
+     * @param siteId the site id
+     * @param variableIds the variables committed
+     */
+    public void committed(int siteId, Collection<Integer> variableIds) {
+        for (int variableId : variableIds) {
+            committed(siteId, variableId);
+        }
+    }
+
+    /**
+     * Record a variable committed on a site, which becomes readable there
+     * side effect: will change committedSinceFailure
+     * @param siteId the site id
+     * @param variableId the variable committed
+     */
+    public void committed(int siteId, int variableId) {
+        committedSinceFailure[variableId] |= bit(siteId) & holders[variableId];
+    }
+
+    /**
+     * Check whether a site holds a variable
+     * @param siteId the site id
+     * @param variableId the variable id
+     * @return true if the site holds a copy
+     */
+    public boolean holds(int siteId, int variableId) {
+        return (holders[variableId] & bit(siteId)) != 0;
+    }
+
+    /**
+     * Record where a variable is placed, used when it is placed first and every time it moves
+     * The moved copies come from a readable copy, so they are all readable.
+     * side effect: will change the masks and the order of the sites of the variable
+     * @param dataInfo the data distribution information of the variable
+     */
+    public void place(DataInfo dataInfo) {
+        int variableId = dataInfo.getVariableId();
+        if (variableId >= holders.length) {
+            int length = Math.max(variableId + 1, holders.length * 2);
+            holders = Arrays.copyOf(holders, length);
+            committedSinceFailure = Arrays.copyOf(committedSinceFailure, length);
+            firstSite = Arrays.copyOf(firstSite, length);
+        }
+        List<Integer> siteIds = dataInfo.getAvailableSites();
+        long mask = 0;
+        boolean regular = true;
+        int previousKey = -1;
+        for (int siteId : siteIds) {
+            mask |= bit(siteId);
+            // the distance from the first site, going up and wrapping around
+            int key = (siteId - siteIds.get(0) + MAX_SITES) % MAX_SITES;
+            regular &= key > previousKey;
+            previousKey = key;
+        }
+        holders[variableId] = mask;
+        committedSinceFailure[variableId] = mask;
+        notReplicated.set(variableId, dataInfo.getType() == DataType.NOT_REPLICATED);
+        firstSite[variableId] = siteIds.isEmpty() ? 0 : (byte) (siteIds.get(0) - 1);
+        if (regular) {
+            irregularOrders.remove(variableId);
+        } else {
+            int[] order = new int[siteIds.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = siteIds.get(i);
+            }
+            irregularOrders.put(variableId, order);
+        }
+    }
+
+    /**
+     * Getting the sites that are up and hold a variable
+     * @param variableId the variable id
+     * @return the mask of the sites
+     */
+    public long getUpSites(int variableId) {
+        return holders[variableId] & upSites;
+    }
+
+    /**
+     * Getting the sites where a variable can be read
+     * @param variableId the variable id
+     * @return the mask of the sites that are up and hold a readable copy
+     */
+    public long getReadableSites(int variableId) {
+        long readable = notReplicated.get(variableId) ? -1L : neverFailedSites | committedSinceFailure[variableId];
+        return holders[variableId] & upSites & readable;
+    }
+
+    /**
+     * Choose among some sites holding a variable the first one in the order of its placement
+     * @param variableId the variable id
+     * @param candidates the mask of the sites to choose from
+     * @return the site id, -1 if there is no candidate
+     */
+    public int choose(int variableId, long candidates) {
+        if (candidates == 0) {
+            return -1;
+        }
+        int[] order = irregularOrders.isEmpty() ? null : irregularOrders.get(variableId);
+        if (order != null) {
+            for (int siteId : order) {
+                if ((candidates & bit(siteId)) != 0) {
+                    return siteId;
+                }
+            }
+            return -1;
+        }
+        // the sites follow the first one in ascending order and wrap around
+        long following = candidates & (-1L << firstSite[variableId]);
+        return Long.numberOfTrailingZeros(following != 0 ? following : candidates) + 1;
+    }
+}
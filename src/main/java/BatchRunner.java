@@ -0,0 +1,251 @@
+package src.main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Runs many trace files in one JVM, each on its own Database instance, in parallel on a fork-join pool.
+ * Every output is written to its own file and compared with the expected output if there is one.
+ */
+public class BatchRunner {
+    private final String[] engineOptions;   // the command line options every database is created with
+    private final Path outputDirectory;
+    private final Path expectedDirectory;   // null if outputs are not compared
+    private final int parallelism;
+
+    /**
+     * records the outcome of one trace
+     */
+    static class Result {
+        final Path trace;
+        final long nanos;
+        final String status;    // PASS, FAIL, NEW (no expected output) or ERROR
+
+        Result(Path trace, long nanos, String status) {
+            this.trace = trace;
+            this.nanos = nanos;
+            this.status = status;
+        }
+    }
+
+    /**
+     * Initialize the batch runner
+     * @param engineOptions the command line options every database is created with
+     * @param outputDirectory where <trace name>.out files are written
+     * @param expectedDirectory where the expected <trace name>.out files are read from, null to skip the comparison
+     * @param parallelism the number of worker threads
+     * @see Application#createDatabase(String[])
+     */
+    public BatchRunner(String[] engineOptions, Path outputDirectory, Path expectedDirectory, int parallelism) {
+        this.engineOptions = engineOptions;
+        this.outputDirectory = outputDirectory;
+        this.expectedDirectory = expectedDirectory;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Resolve a directory or a glob such as input/test1* to the sorted list of trace files
+     * @param pattern a directory or a glob whose wildcards are in the file name
+     * @return the matching regular files
+     * @throws IOException if the directory can not be listed
+     */
+    public static List<Path> resolve(String pattern) throws IOException {
+        Path path = Paths.get(pattern);
+        Path directory;
+        PathMatcher matcher;
+        if (Files.isDirectory(path)) {
+            directory = path;
+            matcher = p -> true;
+        } else {
+            directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + path.getFileName());
+        }
+
+        List<Path> traces = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path candidate : stream) {
+                if (Files.isRegularFile(candidate) && matcher.matches(candidate.getFileName())) {
+                    traces.add(candidate);
+                }
+            }
+        }
+        Collections.sort(traces);
+        return traces;
+    }
+
+    /**
+     * Run every trace a number of times without recording the outputs, to get the JIT warm before timing
+     * @param traces the trace files
+     * @param rounds the number of rounds
+     */
+    public void warmUp(List<Path> traces, int rounds) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+                for (Path trace : traces) {
+                    tasks.add(pool.submit(() -> runTrace(trace, false)));
+                }
+                for (ForkJoinTask<Result> task : tasks) {
+                    task.join();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Run every trace, write its output and compare it with the expected output
+     * @param traces the trace files
+     * @return the result of every trace, in the order of traces
+     * @throws IOException if the output directory can not be created
+     */
+    public List<Result> run(List<Path> traces) throws IOException {
+        Files.createDirectories(outputDirectory);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+            for (Path trace : traces) {
+                tasks.add(pool.submit(() -> runTrace(trace, true)));
+            }
+            List<Result> results = new ArrayList<>();
+            for (ForkJoinTask<Result> task : tasks) {
+                results.add(task.join());
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Run a single trace on a fresh database
+     * @param trace the trace file
+     * @param record whether to write and compare the output
+     * @return the result
+     */
+    private Result runTrace(Path trace, boolean record) {
+        long start = System.nanoTime();
+        String output;
+        try (Database database = Application.createDatabase(engineOptions)) {
+            if (BinaryTraceReader.isBinary(trace.toFile())) {
+                try (BinaryTraceReader reader = new BinaryTraceReader(trace.toFile())) {
+                    database.process(reader);
+                }
+            } else {
+                try (Scanner scanner = new Scanner(trace.toFile())) {
+                    database.process(scanner);
+                }
+            }
+            output = database.getOutput();
+        } catch (IOException | RuntimeException e) {
+            return new Result(trace, System.nanoTime() - start, "ERROR");
+        }
+        long nanos = System.nanoTime() - start;
+        if (!record) {
+            return new Result(trace, nanos, "-");
+        }
+
+        String fileName = trace.getFileName() + ".out";
+        try {
+            Files.write(outputDirectory.resolve(fileName), output.getBytes(StandardCharsets.UTF_8));
+            if (expectedDirectory == null) {
+                return new Result(trace, nanos, "-");
+            }
+            Path expectedFile = expectedDirectory.resolve(fileName);
+            if (!Files.exists(expectedFile)) {
+                return new Result(trace, nanos, "NEW");
+            }
+            String expected = new String(Files.readAllBytes(expectedFile), StandardCharsets.UTF_8);
+            return new Result(trace, nanos, normalize(expected).equals(normalize(output)) ? "PASS" : "FAIL");
+        } catch (IOException e) {
+            return new Result(trace, nanos, "ERROR");
+        }
+    }
+
+    /**
+     * Helper method for ignoring line ending differences and trailing blank lines when comparing outputs
+     * @param output the output
+     * @return the normalized output
+     */
+    private static String normalize(String output) {
+        String normalized = output.replace("\r\n", "\n");
+        int end = normalized.length();
+        while (end > 0 && Character.isWhitespace(normalized.charAt(end - 1))) {
+            end--;
+        }
+        return normalized.substring(0, end);
+    }
+
+    /**
+     * Print the per-trace timing summary
+     * @param results the results
+     * @param wallNanos the elapsed wall-clock time of the measured round
+     * @return true if no trace failed or errored
+     */
+    public static boolean printSummary(List<Result> results, long wallNanos) {
+        long totalNanos = 0;
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Result result : results) {
+            System.out.println(String.format("%-40s %10.3f ms  %s", result.trace, result.nanos / 1e6, result.status));
+            totalNanos += result.nanos;
+            counts.put(result.status, counts.getOrDefault(result.status, 0) + 1);
+        }
+        System.out.println(String.format("%d traces, %.3f ms total trace time, %.3f ms wall time, %s",
+                results.size(), totalNanos / 1e6, wallNanos / 1e6, counts));
+        return !counts.containsKey("FAIL") && !counts.containsKey("ERROR");
+    }
+
+    /**
+     * Command line entry point
+     * usage: -batch <directory or glob> [-out dir] [-expected dir] [-threads n] [-warmup rounds] [engine options]
+     * @param args the arguments
+     * @return true if no trace failed or errored
+     * @throws IOException if the traces can not be listed or the outputs can not be written
+     */
+    public static boolean runBatch(String[] args) throws IOException {
+        String pattern = null;
+        Path outputDirectory = Paths.get("output");
+        Path expectedDirectory = null;
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int warmupRounds = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-batch":
+                    pattern = args[++i];
+                    break;
+                case "-out":
+                    outputDirectory = Paths.get(args[++i]);
+                    break;
+                case "-expected":
+                    expectedDirectory = Paths.get(args[++i]);
+                    break;
+                case "-threads":
+                    parallelism = Integer.parseInt(args[++i]);
+                    break;
+                case "-warmup":
+                    warmupRounds = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    // engine options are read by Application.createDatabase
+                    if (Application.takesValue(args[i])) {
+                        i++;
+                    }
+            }
+        }
+
+        List<Path> traces = resolve(pattern);
+        BatchRunner runner = new BatchRunner(args, outputDirectory, expectedDirectory, parallelism);
+        runner.warmUp(traces, warmupRounds);
+        long start = System.nanoTime();
+        List<Result> results = runner.run(traces);
+        long wallNanos = System.nanoTime() - start;
+        return printSummary(results, wallNanos);
+    }
+}
@@ -0,0 +1,235 @@
+package src.main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * reads the commands of a binary trace straight from a memory-mapped file
+ * The file is mapped in windows of up to 1 GiB that always hold whole blocks. The checksum of every block is verified before its
+ * first command is decoded, and decoding reuses the command record, so replaying allocates nothing but the texts.
+ * @see BinaryTraceWriter
+ */
+public class BinaryTraceReader implements Closeable {
+    private static final long WINDOW_BYTES = 1L << 30;
+    private static final CommandType[] TYPES = CommandType.values();
+
+    private FileChannel channel;
+    private long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;   // the file offset of the window
+    private long nextBlock;     // the file offset of the next block header
+    private int position;       // the next byte to decode, in the window
+    private int remainingCommands;  // the commands left in the current block
+    private CRC32 crc;
+
+    /**
+     * Open a binary trace
+     * @param file the binary trace
+     * @throws IOException if the file can not be read or does not start with the magic bytes
+     */
+    public BinaryTraceReader(File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        fileSize = channel.size();
+        if (!isBinary(channel)) {
+            channel.close();
+            throw new IOException(file + " is not a binary trace");
+        }
+        nextBlock = BinaryTraceWriter.MAGIC.length;
+        crc = new CRC32();
+    }
+
+    /**
+     * Check whether a file is a binary trace
+     * @param file the file
+     * @return true if it starts with the magic bytes of the binary format
+     * @throws IOException if the file can not be read
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            return isBinary(channel);
+        }
+    }
+
+    /**
+     * Decode the next command
+     * side effect: will change the command, might map the next window
+     * @param command the record to fill
+     * @return false at the end of the trace
+     * @throws IOException if a block is truncated or its checksum does not match
+     */
+    public boolean next(TraceCommand command) throws IOException {
+        while (remainingCommands == 0) {
+            if (nextBlock == fileSize) {
+                return false;
+            }
+            openBlock();
+        }
+        remainingCommands--;
+
+        int opcode = readVarint();
+        if (opcode >= TYPES.length) {
+            throw new IOException("unknown opcode " + opcode + " at byte " + (windowStart + position));
+        }
+        CommandType type = TYPES[opcode];
+        command.clear(type);
+        switch (type) {
+            case BEGIN:
+            case BEGIN_READ_ONLY:
+            case END:
+                command.transactionId = readVarint();
+                break;
+            case READ:
+                command.transactionId = readVarint();
+                command.variableId = readVarint();
+                break;
+            case WRITE:
+                command.transactionId = readVarint();
+                command.variableId = readVarint();
+                command.value = readSigned();
+                break;
+            case SCAN:
+                command.transactionId = readVarint();
+                command.variableId = readVarint();
+                command.value = readVarint();
+                break;
+            case MULTI_WRITE:
+                command.transactionId = readVarint();
+                for (int pairs = readVarint(); pairs > 0; pairs--) {
+                    command.addArgument(readVarint());
+                    command.addArgument(readSigned());
+                }
+                break;
+            case BEGIN_DECLARED:
+                command.transactionId = readVarint();
+                command.value = readVarint();
+                int declared = command.value + readVarint();
+                for (int i = 0; i < declared; i++) {
+                    command.addArgument(readVarint());
+                }
+                break;
+            case ONE_SHOT:
+                command.transactionId = readVarint();
+                for (int operations = readVarint(); operations > 0; operations--) {
+                    int kind = readVarint();
+                    command.addArgument(kind);
+                    command.addArgument(readVarint());
+                    command.addArgument(kind == 1 ? readSigned() : 0);
+                }
+                break;
+            case FAIL:
+            case RECOVER:
+            case ADD_SITE:
+                command.variableId = readVarint();
+                break;
+            case DUMP:
+                break;
+            default:
+                byte[] text = new byte[readVarint()];
+                window.position(position);
+                window.get(text);
+                position += text.length;
+                command.text = new String(text, StandardCharsets.UTF_8);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Helper method for checking the magic bytes
+     * @param channel the file
+     * @return true if the file starts with the magic bytes
+     * @throws IOException if the file can not be read
+     */
+    private static boolean isBinary(FileChannel channel) throws IOException {
+        ByteBuffer magic = ByteBuffer.allocate(BinaryTraceWriter.MAGIC.length);
+        channel.read(magic, 0);
+        return Arrays.equals(magic.array(), BinaryTraceWriter.MAGIC);
+    }
+
+    /**
+     * Helper method for moving to the next block, mapping a new window if the block is not in the current one, and verifying it
+     * side effect: will change the window, nextBlock, position and remainingCommands
+     * @throws IOException if the block is truncated or its checksum does not match
+     */
+    private void openBlock() throws IOException {
+        long blockStart = nextBlock;
+        if (blockStart + BinaryTraceWriter.BLOCK_HEADER_BYTES > fileSize) {
+            throw new IOException("truncated block header at byte " + blockStart);
+        }
+        map(blockStart, BinaryTraceWriter.BLOCK_HEADER_BYTES);
+        int headerPosition = (int) (blockStart - windowStart);
+        int payloadLength = window.getInt(headerPosition);
+        int commands = window.getInt(headerPosition + 4);
+        int checksum = window.getInt(headerPosition + 8);
+        long payloadStart = blockStart + BinaryTraceWriter.BLOCK_HEADER_BYTES;
+        if (payloadLength < 0 || commands < 0 || payloadStart + payloadLength > fileSize) {
+            throw new IOException("truncated block at byte " + blockStart);
+        }
+        map(blockStart, BinaryTraceWriter.BLOCK_HEADER_BYTES + payloadLength);
+
+        position = (int) (payloadStart - windowStart);
+        ByteBuffer payload = window.duplicate();
+        payload.limit(position + payloadLength).position(position);
+        crc.reset();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("checksum mismatch in the block at byte " + blockStart);
+        }
+        nextBlock = payloadStart + payloadLength;
+        remainingCommands = commands;
+    }
+
+    /**
+     * Helper method for making sure a range of the file is in the window
+     * side effect: might change the window and windowStart
+     * @param start the file offset of the range
+     * @param length the length of the range
+     * @throws IOException if the file can not be mapped
+     */
+    private void map(long start, int length) throws IOException {
+        if (window != null && start >= windowStart && start + length <= windowStart + window.capacity()) {
+            return;
+        }
+        long size = Math.min(fileSize - start, Math.max(WINDOW_BYTES, length));
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+    }
+
+    /**
+     * Helper method for decoding an unsigned varint
+     * side effect: will change position
+     * @return the value
+     * @throws IOException if the varint is longer than five bytes
+     */
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = window.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint at byte " + (windowStart + position));
+    }
+
+    /**
+     * Helper method for decoding a zigzag varint
+     * side effect: will change position
+     * @return the signed value
+     * @throws IOException if the varint is malformed
+     */
+    private int readSigned() throws IOException {
+        int value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
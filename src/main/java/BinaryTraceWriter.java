@@ -0,0 +1,181 @@
+package src.main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * writes commands in the binary trace format
+ * The file starts with the magic bytes RCT1, followed by blocks. Every block has a header of three big endian ints (the length
+ * of its payload, its number of commands and the CRC32 of its payload), then the payload: the commands, each one an opcode
+ * (the ordinal of its type) and its fields as varints. Ids and counts are unsigned varints, values are zigzag varints, and texts
+ * are a length and UTF-8 bytes.
+ * @see BinaryTraceReader
+ */
+public class BinaryTraceWriter implements Closeable {
+    static final byte[] MAGIC = {'R', 'C', 'T', '1'};
+    static final int BLOCK_HEADER_BYTES = 12;
+    // a block is written once its payload reaches this size
+    static final int BLOCK_BYTES = 1 << 16;
+
+    private OutputStream out;
+    private byte[] block;   // the payload of the block being filled
+    private int blockLength;
+    private int blockCommands;
+    private CRC32 crc;
+
+    /**
+     * Create a binary trace
+     * @param file the destination
+     * @throws IOException if the file can not be written
+     */
+    public BinaryTraceWriter(File file) throws IOException {
+        out = new BufferedOutputStream(new FileOutputStream(file), BLOCK_BYTES);
+        out.write(MAGIC);
+        block = new byte[BLOCK_BYTES + 64];
+        crc = new CRC32();
+    }
+
+    /**
+     * Append a command
+     * side effect: might write a block
+     * @param command the command
+     * @throws IOException if the file can not be written
+     */
+    public void write(TraceCommand command) throws IOException {
+        writeVarint(command.type.ordinal());
+        switch (command.type) {
+            case BEGIN:
+            case BEGIN_READ_ONLY:
+            case END:
+                writeVarint(command.transactionId);
+                break;
+            case READ:
+                writeVarint(command.transactionId);
+                writeVarint(command.variableId);
+                break;
+            case WRITE:
+                writeVarint(command.transactionId);
+                writeVarint(command.variableId);
+                writeSigned(command.value);
+                break;
+            case SCAN:
+                writeVarint(command.transactionId);
+                writeVarint(command.variableId);
+                writeVarint(command.value);
+                break;
+            case MULTI_WRITE:
+                writeVarint(command.transactionId);
+                writeVarint(command.argumentCount / 2);
+                for (int i = 0; i < command.argumentCount; i += 2) {
+                    writeVarint(command.arguments[i]);
+                    writeSigned(command.arguments[i + 1]);
+                }
+                break;
+            case BEGIN_DECLARED:
+                writeVarint(command.transactionId);
+                writeVarint(command.value);
+                writeVarint(command.argumentCount - command.value);
+                for (int i = 0; i < command.argumentCount; i++) {
+                    writeVarint(command.arguments[i]);
+                }
+                break;
+            case ONE_SHOT:
+                writeVarint(command.transactionId);
+                writeVarint(command.argumentCount / 3);
+                for (int i = 0; i < command.argumentCount; i += 3) {
+                    writeVarint(command.arguments[i]);
+                    writeVarint(command.arguments[i + 1]);
+                    if (command.arguments[i] == 1) {
+                        writeSigned(command.arguments[i + 2]);
+                    }
+                }
+                break;
+            case FAIL:
+            case RECOVER:
+            case ADD_SITE:
+                writeVarint(command.variableId);
+                break;
+            case DUMP:
+                break;
+            default:
+                byte[] text = command.text.getBytes(StandardCharsets.UTF_8);
+                writeVarint(text.length);
+                ensureCapacity(text.length);
+                System.arraycopy(text, 0, block, blockLength, text.length);
+                blockLength += text.length;
+        }
+        blockCommands++;
+        if (blockLength >= BLOCK_BYTES) {
+            writeBlock();
+        }
+    }
+
+    /**
+     * Write the last block and close the file
+     * @throws IOException if the file can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Helper method for writing the block being filled, if it has any command
+     * side effect: will empty the block
+     * @throws IOException if the file can not be written
+     */
+    private void writeBlock() throws IOException {
+        if (blockCommands == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(block, 0, blockLength);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(blockLength);
+        header.writeInt(blockCommands);
+        header.writeInt((int) crc.getValue());
+        out.write(block, 0, blockLength);
+        blockLength = 0;
+        blockCommands = 0;
+    }
+
+    /**
+     * Helper method for appending an unsigned varint, seven bits per byte with the high bit set on all but the last byte
+     * side effect: will change the block
+     * @param value the value, negative values take five bytes
+     */
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            block[blockLength++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block[blockLength++] = (byte) value;
+    }
+
+    /**
+     * Helper method for appending a signed value as a zigzag varint, so that small negative values stay short
+     * side effect: will change the block
+     * @param value the value
+     */
+    private void writeSigned(int value) {
+        writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Helper method for growing the block so that some more bytes fit
+     * side effect: might change the block
+     * @param bytes the number of bytes to append
+     */
+    private void ensureCapacity(int bytes) {
+        if (blockLength + bytes > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, blockLength + bytes));
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package src.main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the initial values of the variables from a file, instead of the 10 * i every variable starts with
+ * Two formats are accepted:
+ * - binary: the magic bytes RCV1, the first variable id and the number of values as big endian ints, then one big endian int
+ *   per variable, the variables being consecutive
+ * - CSV: one "variable,value" line per variable, the variable written as x12 or 12, blank lines and lines starting with # skipped
+ * The file is memory-mapped and cut into parts decoded in parallel. The values are kept in one int array indexed by variable id,
+ * which the data managers use as their initial value function, so no copy is built until a variable is committed.
+ */
+public class BulkLoader {
+    private static final byte[] MAGIC = {'R', 'C', 'V', '1'};
+    private static final int HEADER_BYTES = 12;
+    // the smallest part worth decoding on its own thread
+    private static final long MIN_PART_BYTES = 1 << 20;
+
+    private int[] values;   // <index : variable id, value : initial value>
+    private BitSet loaded;  // the variables that have a value in the file
+    private int count;
+
+    private BulkLoader(int[] values, BitSet loaded, int count) {
+        this.values = values;
+        this.loaded = loaded;
+        this.count = count;
+    }
+
+    /**
+     * Read a load file in either format
+     * @param file the binary or CSV file
+     * @return the loaded values
+     * @throws IOException if the file can not be read
+     * @throws IllegalArgumentException if a CSV line is malformed
+     */
+    public static BulkLoader read(File file) throws IOException {
+        try (FileChannel channel = new RandomAccessFile(file, "r").getChannel()) {
+            byte[] magic = new byte[MAGIC.length];
+            ByteBuffer start = ByteBuffer.wrap(magic);
+            channel.read(start, 0);
+            return Arrays.equals(magic, MAGIC) ? readBinary(channel) : readCsv(channel);
+        }
+    }
+
+    /**
+     * Write values in the binary format
+     * @param file the destination
+     * @param firstVariableId the variable of values[0]
+     * @param values the values of consecutive variables
+     * @throws IOException if the file can not be written
+     */
+    public static void writeBinary(File file, int firstVariableId, int[] values) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.write(MAGIC);
+            out.writeInt(firstVariableId);
+            out.writeInt(values.length);
+            for (int value : values) {
+                out.writeInt(value);
+            }
+        }
+    }
+
+    /**
+     * Getting the number of values read
+     * @return the number of variables that have a value in the file
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getting the largest variable id of the file
+     * @return the largest variable id, 0 if the file is empty
+     */
+    public int getMaxVariableId() {
+        return Math.max(0, loaded.length() - 1);
+    }
+
+    /**
+     * Getting the initial value function of the loaded values
+     * @param fallback the initial value of the variables that are not in the file
+     * @return the function from variable id to initial value
+     */
+    public IntUnaryOperator asInitialValues(IntUnaryOperator fallback) {
+        return variableId -> loaded.get(variableId) ? values[variableId] : fallback.applyAsInt(variableId);
+    }
+
+    /**
+     * Helper method for decoding a binary file, each part copies its values straight from the mapped file into the array
+     * @param channel the file
+     * @return the loaded values
+     * @throws IOException if the file can not be read
+     */
+    private static BulkLoader readBinary(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        channel.read(header, 0);
+        int firstVariableId = header.getInt(4);
+        int count = header.getInt(8);
+        if (firstVariableId < 0 || count < 0 || (long) firstVariableId + count > Integer.MAX_VALUE - 1) {
+            throw new IllegalArgumentException("the load file has an invalid header");
+        }
+        if (HEADER_BYTES + 4L * count > channel.size()) {
+            throw new IllegalArgumentException("the load file is truncated");
+        }
+        int[] values = new int[firstVariableId + count];
+        long[] bounds = cut(4L * count, 4);
+        IntStream.range(0, bounds.length - 1).parallel().forEach(part -> {
+            try {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + bounds[part], bounds[part + 1] - bounds[part]);
+                IntBuffer ints = mapped.asIntBuffer();
+                ints.get(values, firstVariableId + (int) (bounds[part] / 4), ints.remaining());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        BitSet loaded = new BitSet(values.length);
+        loaded.set(firstVariableId, firstVariableId + count);
+        return new BulkLoader(values, loaded, count);
+    }
+
+    /**
+     * Helper method for parsing a CSV file, each part starts after a line break and parses its lines without creating strings
+     * When a variable appears on several lines, the last line wins.
+     * @param channel the file
+     * @return the loaded values
+     * @throws IOException if the file can not be read
+     */
+    private static BulkLoader readCsv(FileChannel channel) throws IOException {
+        long[] bounds = cut(channel.size(), 1);
+        // move every bound after the next line break, so that no line is split
+        for (int part = 1; part < bounds.length - 1; part++) {
+            ByteBuffer window = ByteBuffer.allocate(256);
+            long position = bounds[part];
+            search:
+            while (position < channel.size()) {
+                window.clear();
+                int read = channel.read(window, position);
+                for (int i = 0; i < read; i++) {
+                    if (window.get(i) == '\n') {
+                        position += i + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+            bounds[part] = Math.max(bounds[part - 1], Math.min(position, channel.size()));
+        }
+
+        int[][] parsed = new int[bounds.length - 1][];
+        IntStream.range(0, bounds.length - 1).parallel().forEach(part -> {
+            try {
+                parsed[part] = parseLines(channel.map(FileChannel.MapMode.READ_ONLY, bounds[part], bounds[part + 1] - bounds[part]), bounds[part]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        int maxVariableId = 0;
+        for (int[] pairs : parsed) {
+            for (int i = 1; i < pairs[0]; i += 2) {
+                maxVariableId = Math.max(maxVariableId, pairs[i]);
+            }
+        }
+        int[] values = new int[maxVariableId + 1];
+        BitSet loaded = new BitSet(values.length);
+        // in file order, so that the last line of a variable wins
+        for (int[] pairs : parsed) {
+            for (int i = 1; i < pairs[0]; i += 2) {
+                values[pairs[i]] = pairs[i + 1];
+                loaded.set(pairs[i]);
+            }
+        }
+        return new BulkLoader(values, loaded, loaded.cardinality());
+    }
+
+    /**
+     * Helper method for parsing the lines of one part of a CSV file
+     * @param bytes the part
+     * @param offset the position of the part in the file, for error messages
+     * @return {the used length, then variable id and value of each line}
+     */
+    private static int[] parseLines(ByteBuffer bytes, long offset) {
+        int[] pairs = new int[1 + 2 * Math.min(1 << 20, bytes.remaining() / 4 + 1)];
+        int used = 1;
+        int position = 0;
+        int limit = bytes.limit();
+        while (position < limit) {
+            int lineStart = position;
+            byte first = bytes.get(position);
+            if (first == '\n' || first == '\r' || first == '#') {
+                while (position < limit && bytes.get(position) != '\n') {
+                    position++;
+                }
+                position++;
+                continue;
+            }
+            if (first == 'x' || first == 'X') {
+                position++;
+            }
+            long variableId = 0;
+            int digits = 0;
+            while (position < limit && bytes.get(position) >= '0' && bytes.get(position) <= '9') {
+                variableId = variableId * 10 + bytes.get(position++) - '0';
+                digits++;
+            }
+            if (digits == 0 || digits > 10 || variableId > Integer.MAX_VALUE - 1 || position >= limit || bytes.get(position) != ',') {
+                throw new IllegalArgumentException("malformed line in the load file at byte " + (offset + lineStart));
+            }
+            position++;
+            boolean negative = position < limit && bytes.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            long value = 0;
+            digits = 0;
+            while (position < limit && bytes.get(position) >= '0' && bytes.get(position) <= '9') {
+                value = value * 10 + bytes.get(position++) - '0';
+                digits++;
+            }
+            while (position < limit && (bytes.get(position) == '\r' || bytes.get(position) == ' ')) {
+                position++;
+            }
+            if (digits == 0 || digits > 10 || value > Integer.MAX_VALUE + (negative ? 1L : 0L) || (position < limit && bytes.get(position) != '\n')) {
+                throw new IllegalArgumentException("malformed line in the load file at byte " + (offset + lineStart));
+            }
+            position++;
+
+            if (used + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[used++] = (int) variableId;
+            pairs[used++] = (int) (negative ? -value : value);
+        }
+        pairs[0] = used;
+        return pairs;
+    }
+
+    /**
+     * Helper method for cutting a length into parts for the available processors, each part mapped on its own
+     * @param length the length to cut
+     * @param alignment every bound is a multiple of it
+     * @return the bounds of the parts, from 0 to length
+     */
+    private static long[] cut(long length, int alignment) {
+        int parts = (int) Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4L, length / MIN_PART_BYTES));
+        // a mapping can not exceed 2 GB
+        parts = (int) Math.max(parts, length / (Integer.MAX_VALUE / 2) + 1);
+        long[] bounds = new long[parts + 1];
+        for (int part = 1; part < parts; part++) {
+            bounds[part] = length / parts * part / alignment * alignment;
+        }
+        bounds[parts] = length;
+        return bounds;
+    }
+}
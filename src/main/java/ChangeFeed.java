@@ -0,0 +1,174 @@
+package src.main.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * a bounded ring of the values committed by the data managers, followed by any number of subscribers
+ * Every record (site, variable, commit time, value) gets the next offset. The engine thread is the only publisher; each
+ * subscriber polls from its own offset on its own thread. The publisher never overwrites a record a subscriber has not
+ * polled yet, so a subscriber that falls a whole ring behind blocks the commits until it catches up or closes. Without
+ * subscribers, the ring keeps at least the last three quarters of its capacity, so a new subscriber can start a little in the
+ * past.
+ * The records are kept in primitive arrays. Publishing only takes the lock once every quarter of the ring, to compute how
+ * far it may write before looking at the subscribers again.
+ */
+public class ChangeFeed {
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20_000;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] siteIds;
+    private final int[] variableIds;
+    private final int[] commitTimes;
+    private final int[] values;
+    private volatile long published;    // the offset of the next record, every record before it can be polled
+    private long writeLimit;    // the publisher may write the records before this offset without looking at the subscribers
+    private final List<Subscription> subscriptions;    // guarded by itself
+
+    /**
+     * Create a feed
+     * @param capacity the number of records kept, a power of two of at least 4
+     */
+    public ChangeFeed(int capacity) {
+        if (capacity < 4 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("the capacity " + capacity + " is not a power of two of at least 4");
+        }
+        this.capacity = capacity;
+        mask = capacity - 1;
+        siteIds = new int[capacity];
+        variableIds = new int[capacity];
+        commitTimes = new int[capacity];
+        values = new int[capacity];
+        subscriptions = new ArrayList<>();
+    }
+
+    /**
+     * Getting the offset the next record will get
+     * @return the number of records published so far
+     */
+    public long getPublished() {
+        return published;
+    }
+
+    /**
+     * Getting the oldest offset a new subscription can start from
+     * @return the offset of the oldest record kept
+     */
+    public long getOldestOffset() {
+        synchronized (subscriptions) {
+            return Math.max(0, writeLimit - capacity);
+        }
+    }
+
+    /**
+     * Publish a committed value, will be called by the data managers
+     * side effect: might wait until the slowest subscriber polls
+     * @param siteId the site id
+     * @param variableId the variable id
+     * @param commitTime the commit time
+     * @param value the value
+     */
+    public void publish(int siteId, int variableId, int commitTime, int value) {
+        long offset = published;
+        for (int idle = 0; offset >= writeLimit; idle++) {
+            updateWriteLimit(offset);
+            if (offset >= writeLimit) {
+                if (idle < SPINS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+            }
+        }
+        int slot = (int) offset & mask;
+        siteIds[slot] = siteId;
+        variableIds[slot] = variableId;
+        commitTimes[slot] = commitTime;
+        values[slot] = value;
+        published = offset + 1;
+    }
+
+    /**
+     * Subscribe from an offset
+     * @param offset the offset of the first record to poll, from getOldestOffset to getPublished
+     * @return the subscription
+     * @throws IllegalArgumentException if the records from the offset are no longer kept, or the offset was not published yet
+     */
+    public Subscription subscribe(long offset) {
+        synchronized (subscriptions) {
+            long oldest = Math.max(0, writeLimit - capacity);
+            if (offset < oldest || offset > published) {
+                throw new IllegalArgumentException("offset " + offset + " is out of " + oldest + ".." + published);
+            }
+            Subscription subscription = new Subscription(offset);
+            subscriptions.add(subscription);
+            return subscription;
+        }
+    }
+
+    /**
+     * Helper method for computing how far the publisher may write, a ring after the slowest subscriber and at most a quarter of
+     * the ring ahead, so that the records after writeLimit - capacity stay until the next update
+     * side effect: will change writeLimit
+     * @param offset the offset of the record to publish
+     */
+    private void updateWriteLimit(long offset) {
+        synchronized (subscriptions) {
+            long limit = offset + capacity / 4;
+            for (Subscription subscription : subscriptions) {
+                limit = Math.min(limit, subscription.offset + capacity);
+            }
+            writeLimit = limit;
+        }
+    }
+
+    /**
+     * a consumer of the feed, polling from its own offset
+     * A subscription is used by a single thread.
+     */
+    public class Subscription {
+        private volatile long offset;   // the offset of the next record to poll
+
+        private Subscription(long offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * Getting the offset of the next record to poll
+         * @return the offset
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Hand the records published since the last poll to a listener, without waiting for more
+         * side effect: will advance the offset, which lets the publisher reuse the slots
+         * @param listener the listener
+         * @param maxRecords the most records to hand over
+         * @return the number of records handed over
+         */
+        public int poll(ChangeListener listener, int maxRecords) {
+            long next = offset;
+            long end = Math.min(published, next + maxRecords);
+            for (long current = next; current < end; current++) {
+                int slot = (int) current & mask;
+                listener.onChange(current, siteIds[slot], variableIds[slot], commitTimes[slot], values[slot]);
+            }
+            offset = end;
+            return (int) (end - next);
+        }
+
+        /**
+         * Stop following the feed, the publisher no longer waits for this subscription
+         */
+        public void close() {
+            synchronized (subscriptions) {
+                subscriptions.remove(this);
+            }
+        }
+    }
+}
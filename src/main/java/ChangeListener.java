@@ -0,0 +1,17 @@
+package src.main.java;
+
+/**
+ * receives the committed values of a change feed, in commit order
+ */
+public interface ChangeListener {
+
+    /**
+     * Called for each committed value
+     * @param offset the position of the record in the feed
+     * @param siteId the site where the value was committed
+     * @param variableId the variable id
+     * @param commitTime the commit time
+     * @param value the committed value
+     */
+    void onChange(long offset, int siteId, int variableId, int commitTime, int value);
+}
@@ -0,0 +1,134 @@
+package src.main.java;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * a bounded single-producer single-consumer ring of preallocated commands, handing the parsed lines from the parser thread to
+ * the thread executing them
+ * The producer claims a slot, parses into its command and publishes it; the consumer takes the command, executes it and releases
+ * the slot. Each side owns one counter and only reads the other one, with ordered writes and no locks, so the commands reach
+ * the consumer in the order they were published. A side that has to wait spins, then yields, then parks for short periods.
+ */
+public class CommandRing {
+    // the counters are kept 128 bytes apart, so the two threads do not write to the same cache line
+    private static final int HEAD = 15;
+    private static final int TAIL = 31;
+    private static final int SPINS = 100;
+    private static final int YIELDS = 200;
+    private static final long PARK_NANOS = 20_000;
+
+    private final TraceCommand[] commands;
+    private final RuntimeException[] errors;   // <index : slot, value : the exception thrown parsing the command, or null>
+    private final int mask;
+    private final AtomicLongArray counters;     // HEAD: the next slot to take, TAIL: the next slot to claim
+    private long cachedHead;    // the head last seen by the producer
+    private long cachedTail;    // the tail last seen by the consumer
+    private volatile boolean finished;  // set by the producer after its last command
+    private volatile boolean closed;    // set by the consumer when it stops taking commands
+
+    /**
+     * Create a ring
+     * @param capacity the number of slots, a power of two
+     */
+    public CommandRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("the capacity " + capacity + " is not a power of two");
+        }
+        commands = new TraceCommand[capacity];
+        for (int i = 0; i < capacity; i++) {
+            commands[i] = new TraceCommand();
+        }
+        errors = new RuntimeException[capacity];
+        mask = capacity - 1;
+        counters = new AtomicLongArray(TAIL + 1);
+    }
+
+    /**
+     * Producer side: wait for a free slot
+     * @return the command of the slot to fill, null if the consumer stopped
+     */
+    public TraceCommand claim() {
+        long tail = counters.get(TAIL);
+        for (int idle = 0; tail - cachedHead > mask; idle++) {
+            if (closed) {
+                return null;
+            }
+            cachedHead = counters.get(HEAD);
+            if (tail - cachedHead > mask) {
+                idle(idle);
+            }
+        }
+        return commands[(int) tail & mask];
+    }
+
+    /**
+     * Producer side: hand the claimed command over to the consumer
+     * @param error the exception thrown parsing the command, rethrown to the consumer when it takes it, or null
+     */
+    public void publish(RuntimeException error) {
+        long tail = counters.get(TAIL);
+        errors[(int) tail & mask] = error;
+        counters.lazySet(TAIL, tail + 1);
+    }
+
+    /**
+     * Producer side: signal that no more commands will be published
+     */
+    public void finish() {
+        finished = true;
+    }
+
+    /**
+     * Consumer side: wait for the next command
+     * @return the command, null if the producer finished and every command was taken
+     * @throws RuntimeException the exception thrown parsing the command
+     */
+    public TraceCommand take() {
+        long head = counters.get(HEAD);
+        for (int idle = 0; head == cachedTail; idle++) {
+            boolean producerDone = finished;
+            cachedTail = counters.get(TAIL);
+            if (head == cachedTail) {
+                if (producerDone) {
+                    return null;
+                }
+                idle(idle);
+            }
+        }
+        int slot = (int) head & mask;
+        if (errors[slot] != null) {
+            throw errors[slot];
+        }
+        return commands[slot];
+    }
+
+    /**
+     * Consumer side: give the slot of the last command taken back to the producer, once the command is executed
+     */
+    public void release() {
+        counters.lazySet(HEAD, counters.get(HEAD) + 1);
+    }
+
+    /**
+     * Consumer side: stop taking commands, a producer waiting for a slot gives up
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Helper method for waiting on the other side
+     * @param idle how many times the caller already waited
+     */
+    private static void idle(int idle) {
+        if (idle < SPINS) {
+            return;
+        }
+        if (idle < YIELDS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package src.main.java;
+
+/**
+ * the commands of a trace, the ordinal of each one is its opcode in the binary trace format, so new commands are only appended
+ */
+public enum CommandType {
+    UNKNOWN, BEGIN, BEGIN_READ_ONLY, BEGIN_DECLARED, READ, WRITE, MULTI_WRITE, SCAN, END, FAIL, RECOVER, DUMP, ADD_SITE, PLACEMENT, ONE_SHOT
+}
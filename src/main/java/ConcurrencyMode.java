@@ -0,0 +1,29 @@
+package src.main.java;
+
+/**
+ * how read-write transactions are isolated from each other
+ * LOCKING: strict two phase locking with the available copies algorithm
+ * OPTIMISTIC: reads and writes take no locks, writes are buffered and the read set is validated at commit
+ * SNAPSHOT_ISOLATION: reads see the snapshot at begin time without locks, writes are buffered and the first committer wins
+ */
+public enum ConcurrencyMode {
+    LOCKING, OPTIMISTIC, SNAPSHOT_ISOLATION;
+
+    /**
+     * Get a mode from its command line name
+     * @param name locking, occ or si
+     * @return the mode
+     */
+    public static ConcurrencyMode fromName(String name) {
+        switch (name) {
+            case "locking":
+                return LOCKING;
+            case "occ":
+                return OPTIMISTIC;
+            case "si":
+                return SNAPSHOT_ISOLATION;
+            default:
+                throw new IllegalArgumentException("unknown concurrency mode " + name);
+        }
+    }
+}
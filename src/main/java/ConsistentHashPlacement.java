@@ -0,0 +1,86 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * consistent hashing: every site owns a number of virtual nodes on a hash ring, and a variable is held by the sites of the
+ * first virtual nodes found clockwise from its hash. Adding a site only moves the variables that now fall on its virtual nodes.
+ */
+public class ConsistentHashPlacement implements PlacementPolicy {
+    private final int replicationFactor;
+    private final int virtualNodes;    // virtual nodes per site
+    private List<Integer> ringSiteIds;  // the sites the ring was built for
+    private TreeMap<Long, Integer> ring;    // <key : position on the ring, value : siteId>
+
+    /**
+     * @param replicationFactor the number of copies of every variable
+     * @param virtualNodes the number of virtual nodes of every site
+     */
+    public ConsistentHashPlacement(int replicationFactor, int virtualNodes) {
+        this.replicationFactor = replicationFactor;
+        this.virtualNodes = virtualNodes;
+    }
+
+    @Override
+    public List<Integer> getSites(int variableId, int variableCount, List<Integer> siteIds) {
+        if (!siteIds.equals(ringSiteIds)) {
+            buildRing(siteIds);
+        }
+        int copies = Math.min(replicationFactor, siteIds.size());
+        List<Integer> sites = new ArrayList<>();
+        // walk clockwise from the hash of the variable, wrapping around, until enough distinct sites are found
+        for (int siteId : ring.tailMap(hash(variableId, 0), true).values()) {
+            if (sites.size() == copies) {
+                return sites;
+            }
+            if (!sites.contains(siteId)) {
+                sites.add(siteId);
+            }
+        }
+        for (int siteId : ring.values()) {
+            if (sites.size() == copies) {
+                break;
+            }
+            if (!sites.contains(siteId)) {
+                sites.add(siteId);
+            }
+        }
+        return sites;
+    }
+
+    /**
+     * Put the virtual nodes of every site on the ring
+     * side effect: will change ring
+     * @param siteIds all the site ids
+     */
+    private void buildRing(List<Integer> siteIds) {
+        ring = new TreeMap<>();
+        for (int siteId : siteIds) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring.put(hash(siteId, node + 1), siteId);
+            }
+        }
+        ringSiteIds = new ArrayList<>(siteIds);
+    }
+
+    /**
+     * Helper method for a well mixed position on the ring (the 64 bit finalizer of MurmurHash3)
+     * @param id a variable or site id
+     * @param node 0 for a variable, the virtual node number starting at 1 for a site
+     * @return the position
+     */
+    private static long hash(int id, int node) {
+        long h = ((long) id << 32) ^ node ^ (node == 0 ? 0x9E3779B97F4A7C15L : 0);
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String getName() {
+        return "hash:" + replicationFactor + ":" + virtualNodes;
+    }
+}
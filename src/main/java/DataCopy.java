@@ -3,34 +3,45 @@ package src.main.java;
 import javafx.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * information about the data copy stored on the data manager
+ * The recent versions are kept on the heap in two arrays of commit times and values. When a heap budget is set and the
+ * versions exceed it, the older half is spilled as one run to the version segment of the site, and a sparse index of the runs
+ * (their first commit time and where they start) is kept here so old snapshots can still be found.
  */
 
 class DataCopy {
-    private List<Pair<Integer, Integer>> commitHistory;
+    private int[] commitTimes;
+    private int[] commitValues;
+    private int size;   // the number of versions on the heap
+    private VersionSegment segment;     // where the old versions are spilled, null if they are never spilled
+    private int heapVersions;   // the most versions kept on the heap, 0 for no limit
+    private List<long[]> spilledRuns;   // {first commit time, first record, number of records} of every spilled run, oldest first
     private boolean readAvailable;
     private DataType dataType;
 
     /**
-     * Constructor that initalizes the commitHistory, sets dataType, inital value of the variable 
-     * and also readavailable to be true 
+     * Constructor that initalizes the commitHistory, sets dataType, inital value of the variable
+     * and also readavailable to be true
      * @param dataType
      * @param initialValue
      */
     public DataCopy(DataType dataType, int initialValue)
     {
-        this.commitHistory = new ArrayList<>();
-        commitHistory.add(new Pair<>(-1, initialValue));
+        this.commitTimes = new int[4];
+        this.commitValues = new int[4];
+        this.spilledRuns = new ArrayList<>();
+        addCommitHistory(-1, initialValue);
         this.readAvailable = true;
         this.dataType = dataType;
     }
 
     /**
      * Getter of readAvailable
-     * @return true if able to read this DataCopy else false 
+     * @return true if able to read this DataCopy else false
      */
     public boolean isReadAvailable() {
         return readAvailable;
@@ -46,19 +57,52 @@ class DataCopy {
 
     /**
      * getter of DataType
-     * @return the DataType of this DataCopy 
+     * @return the DataType of this DataCopy
      */
     public DataType getDataType() {
         return dataType;
     }
 
+    /**
+     * Set where the old versions go and how many versions stay on the heap, the runs spilled to another segment are moved to this one
+     * side effect: might change the heap versions, spilledRuns and the segment
+     * @param segment the version segment of the site holding this copy
+     * @param heapVersions the most versions kept on the heap, 0 for no limit
+     */
+    public void setVersionStore(VersionSegment segment, int heapVersions) {
+        if (this.segment != null && this.segment != segment && !spilledRuns.isEmpty()) {
+            List<long[]> runs = spilledRuns;
+            spilledRuns = new ArrayList<>();
+            for (long[] run : runs) {
+                int count = (int) run[2];
+                int[] times = new int[count];
+                int[] values = new int[count];
+                for (int i = 0; i < count; i++) {
+                    times[i] = this.segment.getTime(run[1] + i);
+                    values[i] = this.segment.getValue(run[1] + i);
+                }
+                spilledRuns.add(new long[]{run[0], segment.append(times, values, 0, count), count});
+            }
+        }
+        this.segment = segment;
+        this.heapVersions = heapVersions;
+        spillIfOverBudget();
+    }
+
     /**
      * Adding committed value into the commitHistory
      * @param time the time of this commited value
-     * @param value the value of the DataCopy at this time 
+     * @param value the value of the DataCopy at this time
      */
     public void addCommitHistory(int time, int value) {
-        commitHistory.add(new Pair<>(time, value));
+        if (size == commitTimes.length) {
+            commitTimes = Arrays.copyOf(commitTimes, size * 2);
+            commitValues = Arrays.copyOf(commitValues, size * 2);
+        }
+        commitTimes[size] = time;
+        commitValues[size] = value;
+        size++;
+        spillIfOverBudget();
     }
 
     /**
@@ -66,15 +110,102 @@ class DataCopy {
      * @return the latest committed value of the DataCopy
      */
     public int getLatestCommitValue() {
-        Pair<Integer, Integer> latestCommit = commitHistory.get(commitHistory.size() - 1);
-        return latestCommit.getValue();
+        return commitValues[size - 1];
     }
 
     /**
-     * Getting the whole CommitHistory of this DataCopy
-     * @return the whole CommitHistory of this DataCopy
+     * Getting the time of the latest commit of the DataCopy
+     * @return the latest commit time, -1 if it still has its initial value
+     */
+    public int getLatestCommitTime() {
+        return commitTimes[size - 1];
+    }
+
+    /**
+     * Get the latest version committed before a timestamp, looking in the spilled runs when it is older than the heap versions
+     * @param timestamp the beginning time of the reader
+     * @return the commit time and value, the oldest version if none was committed before the timestamp
+     */
+    public Pair<Integer, Integer> getSnapshot(int timestamp) {
+        if (spilledRuns.isEmpty() || commitTimes[0] < timestamp) {
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (commitTimes[middle] < timestamp) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return new Pair<>(commitTimes[low], commitValues[low]);
+        }
+
+        // the last run starting before the timestamp, or the first run
+        int run = 0;
+        int low = 0;
+        int high = spilledRuns.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (spilledRuns.get(middle)[0] < timestamp) {
+                run = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long[] spilledRun = spilledRuns.get(run);
+        long record = segment.findSnapshot(spilledRun[1], (int) spilledRun[2], timestamp);
+        return new Pair<>(segment.getTime(record), segment.getValue(record));
+    }
+
+    /**
+     * Getting the whole CommitHistory of this DataCopy, the spilled versions are read back from the segment
+     * @return the commit times and values, oldest first
      */
     public List<Pair<Integer, Integer>> getCommitHistory() {
+        List<Pair<Integer, Integer>> commitHistory = new ArrayList<>();
+        for (long[] run : spilledRuns) {
+            for (long record = run[1]; record < run[1] + run[2]; record++) {
+                commitHistory.add(new Pair<>(segment.getTime(record), segment.getValue(record)));
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            commitHistory.add(new Pair<>(commitTimes[i], commitValues[i]));
+        }
         return commitHistory;
     }
-}
\ No newline at end of file
+
+    /**
+     * Copy the whole commit history into a new DataCopy, used when a variable moves to another site
+     * The spilled runs are shared until the new copy is given the version store of its site.
+     * @param dataType the DataType of the new copy, which changes if the number of copies changes
+     * @return the new DataCopy, with the same readability
+     */
+    public DataCopy copy(DataType dataType) {
+        DataCopy dataCopy = new DataCopy(dataType, 0);
+        dataCopy.commitTimes = Arrays.copyOf(commitTimes, commitTimes.length);
+        dataCopy.commitValues = Arrays.copyOf(commitValues, commitValues.length);
+        dataCopy.size = size;
+        dataCopy.segment = segment;
+        dataCopy.spilledRuns = new ArrayList<>(spilledRuns);
+        dataCopy.readAvailable = readAvailable;
+        return dataCopy;
+    }
+
+    /**
+     * Helper method for spilling the older half of the heap versions when they exceed the budget, the latest one always stays
+     * side effect: might change the heap versions, spilledRuns and the segment
+     */
+    private void spillIfOverBudget() {
+        if (heapVersions == 0 || segment == null || size <= heapVersions) {
+            return;
+        }
+        int count = size - Math.max(1, heapVersions / 2);
+        long first = segment.append(commitTimes, commitValues, 0, count);
+        spilledRuns.add(new long[]{commitTimes[0], first, count});
+        System.arraycopy(commitTimes, count, commitTimes, 0, size - count);
+        System.arraycopy(commitValues, count, commitValues, 0, size - count);
+        size -= count;
+    }
+}
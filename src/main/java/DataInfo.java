@@ -21,6 +21,22 @@ public final class DataInfo {
         this.availableSites = availableSites;
     }
 
+    /**
+     * Getter of the variable
+     * @return the variable id
+     */
+    public int getVariableId() {
+        return variableId;
+    }
+
+    /**
+     * Getter of the DataType
+     * @return REPLICATED if more than one site has a copy, NOT_REPLICATED otherwise
+     */
+    public DataType getType() {
+        return type;
+    }
+
     /**
      * Getter of all the sites that has this variable 
      * @return all the sites that have the copy of this variable 
@@ -2,27 +2,200 @@ package src.main.java;
 
 import javafx.util.Pair;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
+/**
+ * holds the data copies of a site
+ * Copies are created lazily: until a variable is first committed or moved here, it is only described by the placement the site
+ * started with and its value comes from the initial value function, so a new data manager allocates nothing per variable.
+ * Readability is not stored per copy: a failure starts a new epoch with an empty bitset of the replicated copies committed since,
+ * so failing and recovering a site take constant time.
+ */
 public class DataManager {
+    // the value every variable starts with, unless values are loaded
+    static final IntUnaryOperator INITIAL_VALUE = variableId -> 10 * variableId;
+
     int siteId;
-    Map<Integer, DataCopy> dataCopies;  // <key : variable id, value : data copy>
+    IntUnaryOperator initialValues;     // the value each variable starts with, shared by the sites
+    Map<Integer, DataInfo> initialLocation;  // <key : variableId, value : data distribution information> when the site started, never changed
+    VersionStore versionStore;  // the data copies that were committed or moved here since, the only ones materialized
+    BitSet dropped;     // the variables of the initial placement that moved away before being materialized
+    boolean failed;     // whether the site failed and has not recovered
+    int epoch;      // the number of failures
+    BitSet readableSinceFailure;    // the replicated copies committed or moved here since the last failure, unused before any failure
+    VersionSegment versionSegment;  // the old versions spilled by the copies of this site, null until a heap budget is set
+    int heapVersions;   // the most versions a copy keeps on the heap, 0 for no limit
+    ChangeFeed changeFeed;  // receives every committed value, null if there is no feed
 
     /**
      * Initialize the data manager
      * @param siteId site id
      */
     public DataManager(int siteId) {
+        this(siteId, PlacementPolicy.buildDataLocation(new DefaultPlacement(), 20, Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)));
+    }
+
+    /**
+     * Initialize the data manager with the copies a placement gives to this site, variable i starts with the value 10 * i
+     * @param siteId site id
+     * @param dataLocation <key : variableId, value : data distribution information>
+     */
+    public DataManager(int siteId, Map<Integer, DataInfo> dataLocation) {
+        this(siteId, dataLocation, new HeapVersionStore());
+    }
+
+    /**
+     * Initialize the data manager with the copies a placement gives to this site, kept in a given store
+     * @param siteId site id
+     * @param dataLocation <key : variableId, value : data distribution information>
+     * @param versionStore an empty store
+     */
+    public DataManager(int siteId, Map<Integer, DataInfo> dataLocation, VersionStore versionStore) {
         this.siteId = siteId;
-        dataCopies = new HashMap<>();
-        for (int i = 1; i <= 20; i++) {
-            if (i % 2 == 0) {
-                dataCopies.put(i, new DataCopy(DataType.REPLICATED, 10 * i));
-                continue;
-            }
-            if ((1 + i % 10) == siteId) {
-                dataCopies.put(i, new DataCopy(DataType.NOT_REPLICATED, 10 * i));
+        this.initialLocation = dataLocation;
+        this.initialValues = INITIAL_VALUE;
+        this.versionStore = versionStore;
+        this.dropped = new BitSet();
+        this.readableSinceFailure = new BitSet();
+    }
+
+    /**
+     * Set the values the variables start with, e.g. loaded from a file, will be called before the first operation
+     * The copies already materialized keep their commit history.
+     * side effect: will change initialValues
+     * @param initialValues the function from variable id to initial value
+     */
+    public void setInitialValues(IntUnaryOperator initialValues) {
+        this.initialValues = initialValues;
+    }
+
+    /**
+     * Set the feed that receives every value committed on this site
+     * @param changeFeed the feed, null to stop publishing
+     */
+    public void setChangeFeed(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Check whether this site holds a copy of a variable
+     * @param variableId the variable id
+     * @return true if the copy is materialized, or if the initial placement put it here and it did not move away
+     */
+    public boolean holds(int variableId) {
+        if (versionStore.contains(variableId)) {
+            return true;
+        }
+        DataInfo dataInfo = initialLocation.get(variableId);
+        return dataInfo != null && !dropped.get(variableId) && dataInfo.getAvailableSites().contains(siteId);
+    }
+
+    /**
+     * Getting the variables held by this site
+     * @return the variable ids in ascending order
+     */
+    public SortedSet<Integer> getVariableIds() {
+        SortedSet<Integer> variableIds = new TreeSet<>(versionStore.getVariableIds());
+        for (DataInfo dataInfo : initialLocation.values()) {
+            if (!dropped.get(dataInfo.getVariableId()) && dataInfo.getAvailableSites().contains(siteId)) {
+                variableIds.add(dataInfo.getVariableId());
             }
         }
+        return variableIds;
+    }
+
+    /**
+     * Getting the number of copies that were materialized
+     * @return the copies committed or moved here
+     */
+    public int getMaterializedCount() {
+        return versionStore.size();
+    }
+
+    /**
+     * Helper method for the type of a copy held by this site
+     * @param variableId the variable id
+     * @return REPLICATED or NOT_REPLICATED
+     */
+    private DataType getDataType(int variableId) {
+        return versionStore.contains(variableId) ? versionStore.getDataType(variableId) : initialLocation.get(variableId).getType();
+    }
+
+    /**
+     * Move every copy of this site to another store, with its whole commit history
+     * side effect: will change versionStore
+     * @param newVersionStore an empty store
+     */
+    public void setVersionStore(VersionStore newVersionStore) {
+        for (int variableId : versionStore.getVariableIds()) {
+            newVersionStore.install(variableId, versionStore.export(variableId));
+        }
+        if (versionSegment != null) {
+            newVersionStore.setHeapVersions(versionSegment, heapVersions);
+        }
+        versionStore = newVersionStore;
+    }
+
+    /**
+     * Get the data copy of a variable, used to move it to another site
+     * The copy may be the one the store holds, so it is copied before being changed. Its readability is kept by this data manager,
+     * see readAvailable.
+     * @param variableId the variable id
+     * @return the data copy, null if this site does not hold the variable
+     */
+    public DataCopy getDataCopy(int variableId) {
+        if (!holds(variableId)) {
+            return null;
+        }
+        return versionStore.contains(variableId) ? versionStore.export(variableId)
+                : new DataCopy(getDataType(variableId), initialValues.applyAsInt(variableId));
+    }
+
+    /**
+     * Start or stop holding a copy of a variable
+     * side effect: will change versionStore, dropped and the readability of the copy
+     * @param variableId the variable id
+     * @param dataCopy the copy with its whole commit history, null to drop the copy
+     */
+    public void setDataCopy(int variableId, DataCopy dataCopy) {
+        if (dataCopy == null) {
+            versionStore.remove(variableId);
+            dropped.set(variableId);
+        } else {
+            versionStore.install(variableId, dataCopy);
+            readableSinceFailure.set(variableId, dataCopy.isReadAvailable());
+        }
+    }
+
+    /**
+     * Set how many versions each copy keeps on the heap, the older ones are spilled to the version segment of this site
+     * side effect: might create the version segment and spill versions of every copy
+     * @param heapVersions the most versions kept on the heap, 0 for no limit
+     */
+    public void setHeapVersions(int heapVersions) {
+        this.heapVersions = heapVersions;
+        if (versionSegment == null) {
+            versionSegment = new VersionSegment(siteId);
+        }
+        versionStore.setHeapVersions(versionSegment, heapVersions);
+    }
+
+    /**
+     * Release the version segment of this site, will be called when the run ends
+     * side effect: will close and delete the spill file
+     */
+    public void close() {
+        if (versionSegment != null) {
+            versionSegment.close();
+        }
+    }
+
+    /**
+     * Getter of the version segment
+     * @return the old versions spilled by this site, null if no heap budget was set
+     */
+    public VersionSegment getVersionSegment() {
+        return versionSegment;
     }
 
     /**
@@ -31,7 +204,11 @@ public class DataManager {
      * @see OutputPrinter#dumpSite(int, Map)
      */
     public void dump(OutputPrinter outputPrinter) {
-        outputPrinter.dumpSite(siteId, dataCopies);
+        Map<Integer, Integer> values = new TreeMap<>();
+        for (int variableId : getVariableIds()) {
+            values.put(variableId, read(variableId));
+        }
+        outputPrinter.dumpSite(siteId, values);
     }
 
     /**
@@ -40,9 +217,10 @@ public class DataManager {
      * @return true if is available for read, false if not available for read
      */
     public boolean readAvailable(int variableId) {
-        DataCopy dCopy = dataCopies.get(variableId);
-        if(dCopy.isReadAvailable()) return true;
-        return false;
+        if (failed) {
+            return false;
+        }
+        return epoch == 0 || readableSinceFailure.get(variableId) || getDataType(variableId) == DataType.NOT_REPLICATED;
     }
 
     /**
@@ -51,26 +229,90 @@ public class DataManager {
      * @return the latest committed value
      */
     public int read(int variableId) {
-        DataCopy dataCopy = dataCopies.get(variableId);
-        return dataCopy.getLatestCommitValue();
+        if (!versionStore.contains(variableId)) {
+            return initialValues.applyAsInt(variableId);
+        }
+        return versionStore.getLatestCommitValue(variableId);
+    }
+
+    /**
+     * Get the time the latest committed value of this variable was committed, used to validate optimistic reads
+     * @param variableId the variable id
+     * @return the latest commit time
+     */
+    public int getLatestCommitTime(int variableId) {
+        if (!versionStore.contains(variableId)) {
+            return -1;
+        }
+        return versionStore.getLatestCommitTime(variableId);
     }
 
     /**
      * Get the latest commit information before a certain timestamp, will be called by read-only transaction
+     * Old snapshots are read from the version segment when they were spilled.
      * @param variableId the variable id
      * @param timestamp the beginning time of the read-only transaction
      * @return the latest commit time and the latest commit value before the timestamp
      */
     public Pair<Integer, Integer> getSnapshot(int variableId, int timestamp) {
-        DataCopy dataCopy = dataCopies.get(variableId);
-        List<Pair<Integer, Integer>> commitHistory = dataCopy.getCommitHistory();
-        Pair<Integer, Integer> snapshot = commitHistory.get(0);
-        for (int i = 1; i < commitHistory.size(); i++) {
-            if (commitHistory.get(i).getKey() < timestamp) {
-                snapshot = commitHistory.get(i);
+        if (!versionStore.contains(variableId)) {
+            return new Pair<>(-1, initialValues.applyAsInt(variableId));
+        }
+        return versionStore.getSnapshot(variableId, timestamp);
+    }
+
+    /**
+     * Get the snapshots of every variable of a range held by this site in one call, will be called by scans of snapshot readers
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @param timestamp the beginning time of the transaction
+     * @return <key : variable id, value : the latest commit time and value before the timestamp>
+     */
+    public Map<Integer, Pair<Integer, Integer>> getSnapshots(int firstVariableId, int lastVariableId, int timestamp) {
+        Map<Integer, Pair<Integer, Integer>> snapshots = new HashMap<>();
+        for (int variableId : variablesInRange(firstVariableId, lastVariableId)) {
+            snapshots.put(variableId, getSnapshot(variableId, timestamp));
+        }
+        return snapshots;
+    }
+
+    /**
+     * Get the latest committed version of every variable of a range that is available for read on this site, in one call
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @return <key : variable id, value : the latest commit time and value>
+     */
+    public Map<Integer, Pair<Integer, Integer>> getLatestVersions(int firstVariableId, int lastVariableId) {
+        Map<Integer, Pair<Integer, Integer>> versions = new HashMap<>();
+        for (int variableId : variablesInRange(firstVariableId, lastVariableId)) {
+            if (readAvailable(variableId)) {
+                versions.put(variableId, new Pair<>(getLatestCommitTime(variableId), read(variableId)));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Helper method for listing the variables of a range held by this site
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @return the variable ids
+     */
+    private List<Integer> variablesInRange(int firstVariableId, int lastVariableId) {
+        List<Integer> variables = new ArrayList<>();
+        // walk whichever is smaller, the range or the variables placed
+        if ((long) lastVariableId - firstVariableId + 1 <= initialLocation.size() + versionStore.size()) {
+            for (int variableId = firstVariableId; variableId <= lastVariableId; variableId++) {
+                if (holds(variableId)) {
+                    variables.add(variableId);
+                }
+            }
+        } else {
+            for (int variableId : getVariableIds().subSet(firstVariableId, lastVariableId + 1)) {
+                variables.add(variableId);
             }
         }
-        return snapshot;
+        return variables;
     }
 
     /**
@@ -81,34 +323,52 @@ public class DataManager {
      */
     public void commitVariables(int time, Map<Integer, Integer> updatedVariables) {
         for (int variableId : updatedVariables.keySet()) {
-            DataCopy dataCopy = dataCopies.get(variableId);
-            int value = updatedVariables.get(variableId);
-            dataCopy.addCommitHistory(time, value);
-            dataCopy.setReadAvailable(true);
+            commitVariable(time, variableId, updatedVariables.get(variableId));
+        }
+    }
+
+    /**
+     * Commit a single variable on its data copy held by this site, and publish it to the change feed
+     * side effect: will change the readability and commit history of the data copy, might wait for the subscribers of the feed
+     * @param time the time when this variable is committed
+     * @param variableId the variable id
+     * @param value the updated value
+     */
+    public void commitVariable(int time, int variableId, int value) {
+        if (!versionStore.contains(variableId)) {
+            versionStore.create(variableId, getDataType(variableId), initialValues.applyAsInt(variableId));
+        }
+        versionStore.commit(variableId, time, value);
+        readableSinceFailure.set(variableId);
+        if (changeFeed != null) {
+            changeFeed.publish(siteId, variableId, time, value);
         }
     }
 
     /**
      * Recover the readability of all the non-replicated data, will be called as soon as the site recovers
-     * side effect: will change the readability of all the non-replicated data copies
+     * The replicated copies stay unreadable until they are committed, which readableSinceFailure records.
+     * side effect: will change failed
      */
     public void setAllNonReplicatedDataAvailable() {
-        for (int variableId : dataCopies.keySet()) {
-            DataCopy dataCopy = dataCopies.get(variableId);
-            if (dataCopy.getDataType() == DataType.NOT_REPLICATED) {
-                dataCopy.setReadAvailable(true);
-            }
-        }
+        failed = false;
     }
 
     /**
      * Set all the data copy as not available for read, will be called when the site fails
-     * side effect: will change the readability of all data copies
+     * side effect: will change failed, epoch and readableSinceFailure
      */
     public void setAllDataUnavailable() {
-        for (int variableId : dataCopies.keySet()) {
-            DataCopy dataCopy = dataCopies.get(variableId);
-            dataCopy.setReadAvailable(false);
-        }
+        failed = true;
+        epoch++;
+        readableSinceFailure = new BitSet();
+    }
+
+    /**
+     * Getter of the epoch
+     * @return the number of times the site failed
+     */
+    public int getEpoch() {
+        return epoch;
     }
 }
@@ -2,45 +2,156 @@ package src.main.java;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.IntUnaryOperator;
+
+public class Database implements AutoCloseable {
+    // ticks per window of access rates for the adaptive replication
+    private static final int ADAPTIVE_WINDOW = 20;
+    private static final int PIPELINE_CAPACITY = 1024;  // the lines parsed ahead of the execution
 
-public class Database {
     int time;
     TransactionManager transactionManager;
+    Sequencer sequencer;
     Map<Integer, Site> sites;
     OutputPrinter outputPrinter;
+    PlacementPolicy placementPolicy;
+    int variableCount;
+    int heapVersions;   // the most versions a data copy keeps on the heap, 0 for no limit
+    boolean offHeap;    // whether the data copies are kept in direct buffers
+    IntUnaryOperator initialValues;     // the value each variable starts with
+    TraceParser traceParser;
+    TraceCommand lineCommand;   // the last line parsed, reused from line to line
+    boolean pipelined;  // whether simulate parses the lines on a separate thread
+    ChangeFeed changeFeed;  // the values committed on every site, null if not enabled
 
     /**
      * initialize the sites and the transaction manager
      * @param verbose adding additional information for debugging purposes
      */
     public Database(boolean verbose) {
+        this(verbose, new DefaultPlacement());
+    }
+
+    /**
+     * initialize ten sites holding twenty variables placed by a placement policy, and the transaction manager
+     * @param verbose adding additional information for debugging purposes
+     * @param placementPolicy decides which sites hold each variable
+     */
+    public Database(boolean verbose, PlacementPolicy placementPolicy) {
+        this(verbose, placementPolicy, 20);
+    }
+
+    /**
+     * initialize ten sites holding a number of variables placed by a placement policy, and the transaction manager
+     * @param verbose adding additional information for debugging purposes
+     * @param placementPolicy decides which sites hold each variable
+     * @param variableCount the number of variables, x1 to xn
+     */
+    public Database(boolean verbose, PlacementPolicy placementPolicy, int variableCount) {
+        this(new OutputPrinter(verbose), placementPolicy, variableCount);
+    }
+
+    /**
+     * initialize ten sites holding a number of variables placed by a placement policy, and the transaction manager, all of them
+     * reporting to an output printer
+     * @param outputPrinter receives the results and the events of the run
+     * @param placementPolicy decides which sites hold each variable
+     * @param variableCount the number of variables, x1 to xn
+     */
+    Database(OutputPrinter outputPrinter, PlacementPolicy placementPolicy, int variableCount) {
         time = 0;
+        traceParser = new TraceParser();
+        lineCommand = new TraceCommand();
+        pipelined = Runtime.getRuntime().availableProcessors() > 1;
         sites = new HashMap<>();
-        outputPrinter = new OutputPrinter(verbose);
+        this.outputPrinter = outputPrinter;
+        this.placementPolicy = placementPolicy;
+        this.variableCount = variableCount;
+        initialValues = DataManager.INITIAL_VALUE;
+        Map<Integer, DataInfo> dataLocation = PlacementPolicy.buildDataLocation(placementPolicy, variableCount, Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9, 10));
         // initialize the sites
         for (int i = 1; i <= 10; i++) {
-            sites.put(i, new Site(i, outputPrinter));
+            sites.put(i, new Site(i, outputPrinter, dataLocation));
         }
         // initialize the transaction manager
-        transactionManager = new TransactionManager(sites, outputPrinter);
+        transactionManager = new TransactionManager(sites, outputPrinter, dataLocation);
+        sequencer = new Sequencer(sites, transactionManager, outputPrinter);
+    }
+
+    /**
+     * Release the spill files of the sites, will be called when the run ends
+     * The output and the statistics should be read before, they may refer to the spilled versions.
+     */
+    @Override
+    public void close() {
+        for (Site site : sites.values()) {
+            site.getDataManager().close();
+        }
+    }
+
+    /**
+     * Get the output produced so far
+     * @return the content of the output buffer
+     */
+    public String getOutput() {
+        return outputPrinter.getOutput();
     }
 
     /**
      * Dumping all the site's information
      */
     public void dump() {
-        for (int i = 1; i <= 10; i++) {
+        for (int i : new TreeSet<>(sites.keySet())) {
             Site site = sites.get(i);
             site.dump();
         }
     }
 
+    /**
+     * adds an empty site and moves to it the variables the placement policy now gives it
+     * @param siteId the new site id
+     * @return false if the site already exists
+     */
+    public boolean addSite(int siteId) {
+        if (sites.containsKey(siteId) || siteId < 1 || siteId > AvailabilityIndex.MAX_SITES) {
+            return false;
+        }
+        sites.put(siteId, new Site(siteId, outputPrinter, new HashMap<>()));
+        sites.get(siteId).getDataManager().setInitialValues(initialValues);
+        if (offHeap) {
+            sites.get(siteId).getDataManager().setVersionStore(new OffHeapVersionStore());
+        }
+        if (heapVersions > 0) {
+            sites.get(siteId).getDataManager().setHeapVersions(heapVersions);
+        }
+        sites.get(siteId).getDataManager().setChangeFeed(changeFeed);
+        transactionManager.receiveNewSite(siteId);
+        rebalance();
+        return true;
+    }
+
+    /**
+     * changes the placement policy and moves the variables accordingly while transactions keep running
+     * @param placementPolicy the new placement policy
+     */
+    public void setPlacementPolicy(PlacementPolicy placementPolicy) {
+        this.placementPolicy = placementPolicy;
+        rebalance();
+    }
+
+    /**
+     * moves every variable to the sites the placement policy gives it, the variables in use move once they are not
+     */
+    private void rebalance() {
+        List<Integer> siteIds = new ArrayList<>(new TreeSet<>(sites.keySet()));
+        transactionManager.rebalance(PlacementPolicy.buildDataLocation(placementPolicy, variableCount, siteIds));
+    }
+
     /**
      * parses each line of the input file and does the corresponding commands 
-     * (e.g. beginRO, begin, recover, fail, end, dump, read, write)
+     * (e.g. beginRO, begin, recover, fail, end, dump, read, write, scan, multi-write, oneshot, addsite, placement)
      * @param inputFile the file with the commands 
      * @throws FileNotFoundException
      */
@@ -52,67 +163,424 @@ public class Database {
         } else {
             scanner = new Scanner(inputFile);
         }
+        if (pipelined) {
+            processPipelined(scanner);
+        } else {
+            process(scanner);
+        }
+        outputPrinter.print();
+    }
 
+    /**
+     * parses and executes every line provided by the scanner without printing the output buffer
+     * @param scanner the source of the commands
+     */
+    public void process(Scanner scanner) {
         // parse and execute each line
         while (scanner.hasNextLine()) {
-            time++;
+            if (!processLine(scanner.nextLine())) {
+                break;
+            }
+        }
+        flush();
+    }
 
-            if (transactionManager.deadLockDetection()) {
-                transactionManager.retry(time);
+    /**
+     * parses the lines on a parser thread while this thread executes them, without printing the output buffer
+     * The lines reach the execution through a ring of preallocated commands, in order, and the time is only advanced here, so
+     * the output is the same as process. The parser thread stops after the first line that is not a known command.
+     * @param scanner the source of the commands
+     */
+    public void processPipelined(Scanner scanner) {
+        CommandRing ring = new CommandRing(PIPELINE_CAPACITY);
+        Thread parserThread = new Thread(() -> parseLines(scanner, ring), "trace-parser");
+        // the parser thread may be blocked reading std in when the execution stops
+        parserThread.setDaemon(true);
+        parserThread.start();
+        try {
+            TraceCommand command;
+            while ((command = ring.take()) != null) {
+                boolean known = apply(command);
+                ring.release();
+                if (!known) {
+                    break;
+                }
             }
+        } finally {
+            ring.close();
+        }
+        flush();
+    }
+
+    /**
+     * Helper method for the parser stage, parsing every line into the ring until a line is not a known command
+     * @param scanner the source of the commands
+     * @param ring the ring to fill
+     */
+    private static void parseLines(Scanner scanner, CommandRing ring) {
+        TraceParser parser = new TraceParser();
+        try {
+            while (scanner.hasNextLine()) {
+                TraceCommand command = ring.claim();
+                if (command == null) {
+                    return;
+                }
+                try {
+                    parser.parse(scanner.nextLine(), command);
+                } catch (RuntimeException e) {
+                    ring.publish(e);
+                    return;
+                }
+                ring.publish(null);
+                if (command.type == CommandType.UNKNOWN) {
+                    return;
+                }
+            }
+        } finally {
+            ring.finish();
+        }
+    }
+
+    /**
+     * runs the one-shot transactions submitted since the last line that was not a one-shot transaction
+     */
+    public void flush() {
+        if (sequencer.hasQueued()) {
+            sequencer.flush(time);
+        }
+    }
+
+    /**
+     * advances the time by one tick, runs deadlock detection, then parses and executes a single line
+     * @param line the command
+     * @return false if the line is not a known command, true otherwise
+     */
+    public boolean processLine(String line) {
+        traceParser.parse(line, lineCommand);
+        return apply(lineCommand);
+    }
 
-            // parse the line
-            String line = scanner.nextLine();
+    /**
+     * replays a binary trace and prints the output, like simulate does for a text trace
+     * @param traceFile the binary trace
+     * @throws IOException if the trace can not be read or is corrupted
+     * @see BinaryTraceWriter
+     */
+    public void replay(File traceFile) throws IOException {
+        try (BinaryTraceReader reader = new BinaryTraceReader(traceFile)) {
+            process(reader);
+        }
+        outputPrinter.print();
+    }
 
-            Pattern pattern = Pattern.compile("[0-9]+");
-            List<Integer> numbers = new ArrayList<>();
-            Matcher matcher = pattern.matcher(line);
-            while (matcher.find()) {
-                numbers.add(Integer.valueOf(matcher.group()));
+    /**
+     * executes every command of a binary trace without printing the output buffer
+     * @param reader the source of the commands
+     * @throws IOException if the trace can not be read or is corrupted
+     */
+    public void process(BinaryTraceReader reader) throws IOException {
+        TraceCommand command = new TraceCommand();
+        while (reader.next(command)) {
+            if (!apply(command)) {
+                break;
             }
+        }
+        flush();
+    }
 
-            if (line.contains("beginRO")) {
-                int transactionId = numbers.get(0);
-                Operation operation = new Operation(OperationType.BEGIN_READ_ONLY, transactionId, time);
-                transactionManager.handleNewRequest(operation, time);
-            } else if (line.contains("begin")) {
-                int transactionId = numbers.get(0);
-                Operation operation = new Operation(OperationType.BEGIN, transactionId, time);
-                transactionManager.handleNewRequest(operation, time);
-            } else if (line.contains("recover")) {
-                int siteId = numbers.get(0);
-                Site site = sites.get(siteId);
-                site.recover();
-                transactionManager.retry(time);
-            } else if (line.contains("fail")) {
-                int siteId = numbers.get(0);
-                Site site = sites.get(siteId);
-                site.fail();
-                transactionManager.receiveFailureNotice(siteId, time);
-            } else if (line.contains("end")) {
-                int transactionId = numbers.get(0);
-                Operation operation = new Operation(OperationType.COMMIT, transactionId, time);
-                transactionManager.handleNewRequest(operation, time);
+    /**
+     * advances the time by one tick, runs deadlock detection, then executes a parsed command
+     * @param command the command, parsed from a line or decoded from a binary trace
+     * @return false if the command is unknown, true otherwise
+     */
+    public boolean apply(TraceCommand command) {
+        advance();
+
+        // consecutive one-shot transactions are sequenced as one batch, which runs before the next other command
+        if (command.type == CommandType.ONE_SHOT) {
+            return submitOneShot(command);
+        }
+        flush();
+
+        int transactionId = command.transactionId;
+        switch (command.type) {
+            case ADD_SITE:
+                return addSite(command.variableId);
+            case PLACEMENT:
+                setPlacementPolicy(PlacementPolicy.fromName(command.text));
+                break;
+            case BEGIN_READ_ONLY:
+                transactionManager.handleNewRequest(new Operation(OperationType.BEGIN_READ_ONLY, transactionId, time), time);
+                break;
+            case BEGIN:
+                transactionManager.handleNewRequest(new Operation(OperationType.BEGIN, transactionId, time), time);
+                break;
+            case BEGIN_DECLARED: {
+                // begin(T1,R[x1,x3],W[x2]) declares the access set of the transaction
+                SortedSet<Integer> declaredReads = new TreeSet<>();
+                SortedSet<Integer> declaredWrites = new TreeSet<>();
+                for (int i = 0; i < command.argumentCount; i++) {
+                    (i < command.value ? declaredReads : declaredWrites).add(command.arguments[i]);
+                }
+                transactionManager.handleNewRequest(Operation.declaredBegin(transactionId, declaredReads, declaredWrites, time), time);
+                break;
+            }
+            case RECOVER:
+                recoverSite(command.variableId);
+                break;
+            case FAIL:
+                failSite(command.variableId);
+                break;
+            case END:
+                transactionManager.handleNewRequest(new Operation(OperationType.COMMIT, transactionId, time), time);
                 transactionManager.retry(time);
-            } else if (line.contains("dump")) {
+                break;
+            case DUMP:
                 dump();
-            } else if (line.contains("R")) {
-                int transactionId = numbers.get(0);
-                int variableId = numbers.get(1);
-                Operation operation = new Operation(OperationType.READ, transactionId, variableId, time);
-                transactionManager.handleNewRequest(operation, time);
-            } else if (line.contains("W")) {
-                int transactionId = numbers.get(0);
-                int variableId = numbers.get(1);
-                int value = numbers.get(2);
-                Operation operation = new Operation(OperationType.WRITE, transactionId, variableId, value, time);
-                transactionManager.handleNewRequest(operation, time);
-            } else {
+                break;
+            case SCAN:
+                transactionManager.handleNewRequest(Operation.scan(transactionId, command.variableId, command.value, time), time);
+                break;
+            case MULTI_WRITE: {
+                SortedMap<Integer, Integer> writes = new TreeMap<>();
+                for (int i = 0; i + 1 < command.argumentCount; i += 2) {
+                    writes.put(command.arguments[i], command.arguments[i + 1]);
+                }
+                transactionManager.handleNewRequest(Operation.multiWrite(transactionId, writes, time), time);
                 break;
             }
+            case READ:
+                transactionManager.handleNewRequest(new Operation(OperationType.READ, transactionId, command.variableId, time), time);
+                break;
+            case WRITE:
+                transactionManager.handleNewRequest(new Operation(OperationType.WRITE, transactionId, command.variableId, command.value, time), time);
+                break;
+            default:
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * advances the time by one tick, runs deadlock detection and the replication changes due at the new time
+     */
+    void advance() {
+        time++;
 
+        if (transactionManager.resolveDeadlocks(time)) {
+            transactionManager.retry(time);
         }
-        outputPrinter.print();
+        transactionManager.adaptReplication(time);
+        if (transactionManager.hasPendingMoves()) {
+            transactionManager.applyPendingMoves();
+        }
+    }
+
+    /**
+     * fails a site at the current time
+     * @param siteId the site id
+     */
+    void failSite(int siteId) {
+        sites.get(siteId).fail();
+        transactionManager.receiveFailureNotice(siteId, time);
+    }
+
+    /**
+     * recovers a site at the current time and retries the operations waiting for it
+     * @param siteId the site id
+     */
+    void recoverSite(int siteId) {
+        sites.get(siteId).recover();
+        transactionManager.receiveRecoveryNotice(siteId);
+        transactionManager.retry(time);
+    }
+
+    /**
+     * submits a one-shot transaction, e.g. oneshot(T5,R(x1),W(x2,20)), to the sequencer
+     * @param command the parsed one-shot transaction
+     * @return false if the id is taken by another transaction or an operation accesses a variable that does not exist, true otherwise
+     */
+    private boolean submitOneShot(TraceCommand command) {
+        int transactionId = command.transactionId;
+        // the sequencer takes and releases locks by transaction id, so the id must not be shared
+        if (transactionManager.getTransaction(transactionId) != null) {
+            return false;
+        }
+        List<Operation> operations = new ArrayList<>();
+        for (int i = 0; i + 2 < command.argumentCount; i += 3) {
+            int variableId = command.arguments[i + 1];
+            if (transactionManager.getDataInfo(variableId) == null) {
+                return false;
+            }
+            if (command.arguments[i] == 0) {
+                operations.add(new Operation(OperationType.READ, transactionId, variableId, time));
+            } else {
+                operations.add(new Operation(OperationType.WRITE, transactionId, variableId, command.arguments[i + 2], time));
+            }
+        }
+        sequencer.submit(new OneShotTransaction(transactionId, time, operations));
+        return true;
+    }
+
+    /**
+     * aborts a transaction whose client went away, as a tick of its own
+     * @param transactionId the transaction to abort
+     */
+    public void cancel(int transactionId) {
+        time++;
+        sequencer.cancel(transactionId);
+        transactionManager.cancel(transactionId, time);
+    }
+
+    /**
+     * Set how the transaction manager handles deadlocks
+     * @param deadlockPolicy the policy
+     */
+    public void setDeadlockPolicy(DeadlockPolicy deadlockPolicy) {
+        transactionManager.setDeadlockPolicy(deadlockPolicy);
+    }
+
+    /**
+     * sets whether a site failure aborts the transactions that accessed the site at once, releasing their locks
+     * @param proactiveAbort true to release their locks at failure time, the abort is still reported when they end
+     */
+    public void setProactiveAbort(boolean proactiveAbort) {
+        transactionManager.setProactiveAbort(proactiveAbort);
+    }
+
+    /**
+     * Start the variables from loaded values instead of 10 * i, will be called before the first command
+     * The sites share the loaded array as their initial value function, so no copy is built, and the variables missing from
+     * the file keep 10 * i.
+     * @param bulkLoader the values read from a load file
+     */
+    public void load(BulkLoader bulkLoader) {
+        initialValues = bulkLoader.asInitialValues(DataManager.INITIAL_VALUE);
+        sites.values().parallelStream().forEach(site -> site.getDataManager().setInitialValues(initialValues));
+    }
+
+    /**
+     * Keep the data copies of every site outside the GC heap, in direct buffers, or back on the heap
+     * @param offHeap true for direct buffers
+     */
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        for (Site site : sites.values()) {
+            site.getDataManager().setVersionStore(offHeap ? new OffHeapVersionStore() : new HeapVersionStore());
+        }
+    }
+
+    /**
+     * Set how many versions every data copy keeps on the heap, older versions are spilled to a memory-mapped file per site
+     * Ignored when the data copies are off the heap.
+     * @param heapVersions the most versions kept on the heap, 0 for no limit
+     */
+    public void setHeapVersions(int heapVersions) {
+        this.heapVersions = heapVersions;
+        for (Site site : sites.values()) {
+            site.getDataManager().setHeapVersions(heapVersions);
+        }
+    }
+
+    /**
+     * Turn on or off the replication driven by the access rates
+     * @param adaptive true to add copies to read-hot variables and remove copies from write-hot ones
+     */
+    public void setAdaptiveReplication(boolean adaptive) {
+        transactionManager.setAdaptiveReplication(adaptive ? new AdaptiveReplication(ADAPTIVE_WINDOW) : null);
+    }
+
+    /**
+     * Publish every value committed from now on, on every site, to a change feed
+     * The subscribers poll the feed on their own threads: once the slowest one is a whole feed behind, commits wait for it.
+     * @param capacity the number of records the feed keeps, a power of two
+     * @return the feed
+     */
+    public ChangeFeed enableChangeFeed(int capacity) {
+        changeFeed = new ChangeFeed(capacity);
+        for (Site site : sites.values()) {
+            site.getDataManager().setChangeFeed(changeFeed);
+        }
+        return changeFeed;
+    }
+
+    /**
+     * Getting the change feed
+     * @return the feed, null if it is not enabled
+     */
+    public ChangeFeed getChangeFeed() {
+        return changeFeed;
+    }
+
+    /**
+     * Set whether simulate parses the lines on a separate thread, by default it does when more than one processor is available
+     * @param pipelined true to overlap parsing with execution
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Set the mode read-write transactions run under, before the first transaction begins
+     * @param concurrencyMode the mode
+     * @throws IllegalStateException if a transaction has already begun
+     */
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        transactionManager.setConcurrencyMode(concurrencyMode);
+    }
+
+    /**
+     * Print the commit and abort counts of the run, so that deadlock policies can be compared per workload
+     * @param elapsedNanos the wall-clock time of the run
+     */
+    public void printStatistics(long elapsedNanos) {
+        int commits = transactionManager.getCommitCount();
+        int aborts = transactionManager.getAbortCount();
+        double abortRate = commits + aborts == 0 ? 0 : 100.0 * aborts / (commits + aborts);
+        System.out.println(String.format("mode %s, policy %s, placement %s: %d commits, %d aborts (%.1f%% abort rate, %d by the deadlock policy)",
+                transactionManager.getConcurrencyMode().name().toLowerCase(), transactionManager.getDeadlockPolicy().getName(),
+                placementPolicy.getName(), commits, aborts, abortRate, transactionManager.getVictimCount()));
+        System.out.println(String.format("%d ticks, %.3f commits per tick, %.1f commits per second",
+                time, time == 0 ? 0 : (double) commits / time, elapsedNanos == 0 ? 0 : commits * 1e9 / elapsedNanos));
+        if (heapVersions > 0 && !offHeap) {
+            long spilledVersions = 0;
+            long spilledBytes = 0;
+            long diskReads = 0;
+            for (Site site : sites.values()) {
+                VersionSegment versionSegment = site.getDataManager().getVersionSegment();
+                spilledVersions += versionSegment.getRecordCount();
+                spilledBytes += versionSegment.getBytes();
+                diskReads += versionSegment.getDiskReads();
+            }
+            System.out.println(String.format("%d versions per copy on the heap, %d versions spilled (%d KiB), %d snapshot reads from disk",
+                    heapVersions, spilledVersions, spilledBytes / 1024, diskReads));
+        }
+        AdaptiveReplication adaptiveReplication = transactionManager.getAdaptiveReplication();
+        if (adaptiveReplication != null) {
+            int growing = 0;
+            for (ReplicationDecision decision : adaptiveReplication.getDecisions()) {
+                growing += decision.isGrowing() ? 1 : 0;
+            }
+            System.out.println(String.format("%d replication decisions (%d growing, %d shrinking), %d replicas added, %d removed",
+                    adaptiveReplication.getDecisions().size(), growing, adaptiveReplication.getDecisions().size() - growing,
+                    adaptiveReplication.getReplicasAdded(), adaptiveReplication.getReplicasRemoved()));
+            for (ReplicationDecision decision : adaptiveReplication.getDecisions()) {
+                System.out.println(String.format("  tick %d: x%d %d -> %d copies (%.1f reads, %.1f writes per window)", decision.getTime(),
+                        decision.getVariableId(), decision.getOldSites().size(), decision.getNewSites().size(),
+                        decision.getReadRate(), decision.getWriteRate()));
+            }
+        }
+        if (transactionManager.isProactiveAbort()) {
+            System.out.println(String.format("%d transactions doomed by site failures, locks released %d ticks early, %d waiting ticks saved",
+                    transactionManager.getDoomedCount(), transactionManager.getEarlyReleaseTicks(), transactionManager.getWaitingTicksSaved()));
+        }
+    }
+
+    /**
+     * Get the output printer, so that embedders can listen to the output or turn off buffering
+     * @return the output printer
+     */
+    public OutputPrinter getOutputPrinter() {
+        return outputPrinter;
     }
-    
 }
@@ -0,0 +1,332 @@
+package src.main.java;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Non-blocking TCP front end of a database.
+ * Clients send the same line protocol as the trace files, many lines may be pipelined in one write.
+ * A transaction belongs to the connection that began it, and every output line about a transaction
+ * (reads, commits, aborts) is streamed back to its owner as soon as it happens, even if it was unblocked by another client.
+ * Lines that are not about a transaction (dump, fail, recover) answer to the connection that sent them.
+ * All commands run on the selector thread, one tick per line, in the order they are read.
+ * A client that sends a line longer than MAX_LINE_LENGTH, or reads its output so slowly that more than MAX_QUEUED_BYTES wait
+ * to be sent, is disconnected.
+ */
+public class DatabaseServer implements OutputListener {
+    private static final Pattern TRANSACTION_PATTERN = Pattern.compile("T\\s*([0-9]+)");
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_QUEUED_BYTES = 4 * 1024 * 1024;
+
+    private final Database database;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final Map<Integer, Connection> owners; // <key : transactionId, value : connection that began it, until it commits or aborts>
+    private final Set<SelectionKey> overflowingKeys;    // the connections to close once the current key is handled, their output queue is full
+    private Connection currentConnection;   // the connection whose line is being executed
+    private volatile boolean running;
+
+    /**
+     * state of one client connection
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        final StringBuilder partialLine = new StringBuilder();
+        final Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+        int queuedBytes;    // the bytes in writeQueue that were not sent yet
+        final Set<Integer> transactions = new HashSet<>();  // the transactions it began that did not commit or abort yet
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * Bind the server to the loopback interface
+     * @param database the database to serve, its output is streamed to the clients instead of buffered
+     * @param port the port, 0 to pick a free one
+     * @throws IOException if the port can not be bound
+     */
+    public DatabaseServer(Database database, int port) throws IOException {
+        this.database = database;
+        this.owners = new HashMap<>();
+        this.overflowingKeys = new LinkedHashSet<>();
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        OutputPrinter outputPrinter = database.getOutputPrinter();
+        outputPrinter.setBuffering(false);
+        outputPrinter.setListener(this);
+    }
+
+    /**
+     * Get the port the server is listening on
+     * @return the local port
+     * @throws IOException if the channel is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Run the selector loop until stop() is called
+     * @throws IOException if the selector fails
+     */
+    public void serve() throws IOException {
+        running = true;
+        while (running) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                try {
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    close(key);
+                }
+                closeOverflowing();
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+    }
+
+    /**
+     * Stop the selector loop, can be called from any thread
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Accept a new client connection
+     * @throws IOException if the connection can not be set up
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Read what the client sent and execute every complete line
+     * @param key the selection key of the connection
+     * @throws IOException if the connection is broken
+     */
+    private void read(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        int read = connection.channel.read(connection.readBuffer);
+        if (read == -1) {
+            close(key);
+            return;
+        }
+        connection.readBuffer.flip();
+        connection.partialLine.append(StandardCharsets.UTF_8.decode(connection.readBuffer));
+        connection.readBuffer.clear();
+
+        int lineEnd;
+        while ((lineEnd = connection.partialLine.indexOf("\n")) >= 0) {
+            String line = connection.partialLine.substring(0, lineEnd).trim();
+            connection.partialLine.delete(0, lineEnd + 1);
+            if (!line.isEmpty()) {
+                execute(connection, line);
+            }
+        }
+
+        // the one-shot transactions received together run as one batch
+        currentConnection = connection;
+        try {
+            database.flush();
+        } finally {
+            currentConnection = null;
+        }
+
+        // what is left is an unfinished line, which must not grow without bound
+        if (connection.partialLine.length() > MAX_LINE_LENGTH) {
+            close(key);
+        }
+    }
+
+    /**
+     * Execute one line on behalf of a connection
+     * side effect: might change the ownership of transactions and queue output on any connection
+     * @param connection the connection that sent the line
+     * @param line the command
+     */
+    private void execute(Connection connection, String line) {
+        Matcher matcher = TRANSACTION_PATTERN.matcher(line);
+        if (matcher.find()) {
+            int transactionId = Integer.parseInt(matcher.group(1));
+            Connection owner = owners.get(transactionId);
+            if (line.contains("begin") || line.contains("oneshot")) {
+                // the ids of ended transactions are not owned anymore, but the database still knows them
+                if (owner != null || database.transactionManager.getTransaction(transactionId) != null) {
+                    send(connection, "error: T" + transactionId + " already exists");
+                    return;
+                }
+                owners.put(transactionId, connection);
+                connection.transactions.add(transactionId);
+            } else if (owner != connection) {
+                send(connection, "error: T" + transactionId + " does not belong to this connection");
+                return;
+            }
+        }
+
+        currentConnection = connection;
+        boolean executed = false;
+        try {
+            executed = database.processLine(line);
+            if (!executed) {
+                send(connection, "error: unknown command " + line);
+            }
+        } catch (RuntimeException e) {
+            send(connection, "error: can not execute " + line);
+        } finally {
+            currentConnection = null;
+        }
+
+        // a transaction that could not begin is not owned
+        if (!executed && matcher.find(0) && (line.contains("begin") || line.contains("oneshot"))) {
+            int transactionId = Integer.parseInt(matcher.group(1));
+            if (database.transactionManager.getTransaction(transactionId) == null) {
+                owners.remove(transactionId);
+                connection.transactions.remove(transactionId);
+            }
+        }
+    }
+
+    /**
+     * Route an output line to the connection that owns the transaction, or to the connection being served
+     * @param transactionId the transaction the line is about, 0 if none
+     * @param line the line
+     */
+    @Override
+    public void onOutput(int transactionId, String line) {
+        Connection connection = transactionId == 0 ? currentConnection : owners.get(transactionId);
+        if (connection == null) {
+            connection = currentConnection;
+        }
+        if (connection != null) {
+            send(connection, line);
+        }
+    }
+
+    /**
+     * Stop routing the output of a transaction that committed or aborted to the connection that began it
+     * side effect: will change owners and the transactions of the connection
+     * @param transactionId the transaction id
+     */
+    @Override
+    public void onTransactionEnd(int transactionId) {
+        Connection owner = owners.remove(transactionId);
+        if (owner != null) {
+            owner.transactions.remove(transactionId);
+        }
+    }
+
+    /**
+     * Queue a line for a connection and ask the selector for write readiness
+     * If the queue is full, the line is dropped and the connection is closed once the current key is handled, since closing it
+     * here would abort transactions in the middle of a command.
+     * @param connection the connection
+     * @param line the line without the line break
+     */
+    private void send(Connection connection, String line) {
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (key == null || !key.isValid() || overflowingKeys.contains(key)) {
+            return;
+        }
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (connection.queuedBytes + bytes.length > MAX_QUEUED_BYTES) {
+            overflowingKeys.add(key);
+            return;
+        }
+        connection.writeQueue.add(ByteBuffer.wrap(bytes));
+        connection.queuedBytes += bytes.length;
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Write as much of the queued output as the socket accepts
+     * @param key the selection key of the connection
+     * @throws IOException if the connection is broken
+     */
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        while (!connection.writeQueue.isEmpty()) {
+            ByteBuffer buffer = connection.writeQueue.peek();
+            connection.queuedBytes -= connection.channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                return;
+            }
+            connection.writeQueue.poll();
+        }
+        key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Close the connections whose output queue is full, will be called between two keys
+     * Aborting their transactions might fill other queues, which are closed in turn.
+     */
+    private void closeOverflowing() {
+        while (!overflowingKeys.isEmpty()) {
+            Iterator<SelectionKey> iterator = overflowingKeys.iterator();
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            close(key);
+        }
+    }
+
+    /**
+     * Close a connection and abort the transactions it left running
+     * @param key the selection key of the connection
+     */
+    private void close(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // the connection is gone either way
+        }
+        if (connection == null) {
+            return;
+        }
+        // the transactions that ended are no longer listed, and aborting one prunes it from the list
+        for (int transactionId : new ArrayList<>(connection.transactions)) {
+            owners.remove(transactionId);
+            database.cancel(transactionId);
+        }
+        connection.transactions.clear();
+    }
+}
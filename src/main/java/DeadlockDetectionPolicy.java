@@ -0,0 +1,26 @@
+package src.main.java;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * lets transactions wait freely and searches the waits-for graph for cycles at the beginning of every tick,
+ * aborting the youngest transaction of each cycle
+ */
+public class DeadlockDetectionPolicy implements DeadlockPolicy {
+
+    @Override
+    public Set<Integer> onWait(TransactionManager transactionManager, int requester, Set<Integer> holders, int currentTime) {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean onTick(TransactionManager transactionManager, int currentTime) {
+        return transactionManager.deadLockDetection();
+    }
+
+    @Override
+    public String getName() {
+        return "detection";
+    }
+}
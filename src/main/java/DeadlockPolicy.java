@@ -0,0 +1,56 @@
+package src.main.java;
+
+import java.util.Set;
+
+/**
+ * decides how the transaction manager deals with deadlocks, either by breaking cycles once they exist
+ * or by aborting transactions before a cycle can form
+ */
+public interface DeadlockPolicy {
+
+    /**
+     * Called every time a transaction has to wait for other transactions, in the middle of executing its operation
+     * @param transactionManager the transaction manager
+     * @param requester the transaction that has to wait
+     * @param holders the transactions it waits for
+     * @param currentTime current time
+     * @return the transactions to abort once the operation finished, empty if the requester simply waits
+     */
+    Set<Integer> onWait(TransactionManager transactionManager, int requester, Set<Integer> holders, int currentTime);
+
+    /**
+     * Called at the beginning of every tick, may abort transactions through the transaction manager
+     * @param transactionManager the transaction manager
+     * @param currentTime current time
+     * @return true if any transaction was aborted
+     */
+    boolean onTick(TransactionManager transactionManager, int currentTime);
+
+    /**
+     * Getter of the policy name
+     * @return the name used on the command line
+     */
+    String getName();
+
+    /**
+     * Create a policy from its command line name
+     * @param name detection, wound-wait, wait-die or timeout:<ticks>
+     * @return the policy
+     */
+    static DeadlockPolicy fromName(String name) {
+        if (name.equals("detection")) {
+            return new DeadlockDetectionPolicy();
+        }
+        if (name.equals("wound-wait")) {
+            return new WoundWaitPolicy();
+        }
+        if (name.equals("wait-die")) {
+            return new WaitDiePolicy();
+        }
+        if (name.startsWith("timeout")) {
+            String[] parts = name.split(":");
+            return new LockTimeoutPolicy(parts.length > 1 ? Integer.parseInt(parts[1]) : 10);
+        }
+        throw new IllegalArgumentException("unknown deadlock policy " + name);
+    }
+}
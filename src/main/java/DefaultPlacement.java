@@ -0,0 +1,23 @@
+package src.main.java;
+
+import java.util.List;
+
+/**
+ * the original placement: even variables are replicated on every site, odd variable i is only on site 1 + i % 10
+ * With other than ten sites, odd variable i is on the (i % n)-th site.
+ */
+public class DefaultPlacement implements PlacementPolicy {
+
+    @Override
+    public List<Integer> getSites(int variableId, int variableCount, List<Integer> siteIds) {
+        if (variableId % 2 == 0) {
+            return siteIds;
+        }
+        return PlacementPolicy.consecutiveSites(variableId % siteIds.size(), 1, siteIds);
+    }
+
+    @Override
+    public String getName() {
+        return "default";
+    }
+}
@@ -0,0 +1,270 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * a database handle for embedding the engine in Java code, without going through text traces
+ * Every call is one tick, like a line of a trace: the time advances, deadlocks are resolved, then the call is handed to the
+ * transaction manager or the site as an operation. Results are delivered as futures, which complete as soon as the operation
+ * goes through, possibly during a later call that unblocks it. Nothing is parsed, printed or buffered: the engine reports to a
+ * printer that completes the futures instead of producing lines.
+ * The handle is thread safe, every call holds its lock. Futures complete on the calling thread after the engine is done with
+ * the call, so their callbacks may call the handle again.
+ */
+public class EmbeddedDatabase {
+    private Database database;
+    private int nextTransactionId;
+    private Map<Integer, EmbeddedTransaction> transactions;  // <key : transactionId, value : the transactions that did not end yet>
+    private Deque<Runnable> completions;    // the futures to complete once the engine is done with the current call
+
+    /**
+     * Create a database with ten sites holding the twenty variables of the default placement
+     */
+    public EmbeddedDatabase() {
+        this(new DefaultPlacement(), 20);
+    }
+
+    /**
+     * Create a database with ten sites holding a number of variables
+     * @param placementPolicy decides which sites hold each variable
+     * @param variableCount the number of variables, x1 to xn
+     */
+    public EmbeddedDatabase(PlacementPolicy placementPolicy, int variableCount) {
+        database = new Database(new EventPrinter(), placementPolicy, variableCount);
+        nextTransactionId = 1;
+        transactions = new HashMap<>();
+        completions = new ArrayDeque<>();
+    }
+
+    /**
+     * Set the mode read-write transactions run under, before the first transaction begins
+     * @param concurrencyMode the mode
+     * @throws IllegalStateException if a transaction has already begun
+     */
+    public synchronized void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        database.setConcurrencyMode(concurrencyMode);
+    }
+
+    /**
+     * Set how deadlocks are handled, will be called before the first transaction
+     * @param deadlockPolicy the policy
+     */
+    public synchronized void setDeadlockPolicy(DeadlockPolicy deadlockPolicy) {
+        database.setDeadlockPolicy(deadlockPolicy);
+    }
+
+    /**
+     * Publish every value committed from now on to a change feed, see Database.enableChangeFeed
+     * @param capacity the number of records the feed keeps, a power of two
+     * @return the feed
+     */
+    public synchronized ChangeFeed enableChangeFeed(int capacity) {
+        return database.enableChangeFeed(capacity);
+    }
+
+    /**
+     * Begin a read-write transaction
+     * @return the transaction
+     */
+    public synchronized EmbeddedTransaction begin() {
+        return begin(OperationType.BEGIN);
+    }
+
+    /**
+     * Begin a read-only transaction, which reads the snapshot of its begin time
+     * @return the transaction
+     */
+    public synchronized EmbeddedTransaction beginReadOnly() {
+        return begin(OperationType.BEGIN_READ_ONLY);
+    }
+
+    /**
+     * Fail a site, the transactions that accessed it abort when they commit
+     * @param siteId the site id
+     */
+    public synchronized void fail(int siteId) {
+        checkSite(siteId);
+        database.advance();
+        database.failSite(siteId);
+        complete();
+    }
+
+    /**
+     * Recover a site, the operations waiting for it are retried
+     * @param siteId the site id
+     */
+    public synchronized void recover(int siteId) {
+        checkSite(siteId);
+        database.advance();
+        database.recoverSite(siteId);
+        complete();
+    }
+
+    /**
+     * Advance the time by one tick without any operation, which resolves the deadlocks found at the new time
+     * With deadlock detection, a cycle is only broken at the beginning of a tick, so blocked transactions need another call.
+     */
+    public synchronized void tick() {
+        database.advance();
+        complete();
+    }
+
+    /**
+     * Getting the current time
+     * @return the number of ticks so far
+     */
+    public synchronized int getTime() {
+        return database.time;
+    }
+
+    /**
+     * Helper method for beginning a transaction
+     * @param type BEGIN or BEGIN_READ_ONLY
+     * @return the transaction
+     */
+    private EmbeddedTransaction begin(OperationType type) {
+        EmbeddedTransaction transaction = new EmbeddedTransaction(this, nextTransactionId++);
+        transactions.put(transaction.getId(), transaction);
+        database.advance();
+        database.transactionManager.handleNewRequest(new Operation(type, transaction.getId(), database.time), database.time);
+        complete();
+        return transaction;
+    }
+
+    /**
+     * Submit a read or a write of a transaction, will be called by the transaction
+     * @param type READ or WRITE
+     * @param transactionId the transaction id
+     * @param variableId the variable id
+     * @param value the value to write, ignored by reads
+     */
+    synchronized void submit(OperationType type, int transactionId, int variableId, int value) {
+        database.advance();
+        if (type == OperationType.READ) {
+            database.transactionManager.handleNewRequest(new Operation(type, transactionId, variableId, database.time), database.time);
+        } else {
+            database.transactionManager.handleNewRequest(new Operation(type, transactionId, variableId, value, database.time), database.time);
+        }
+        complete();
+    }
+
+    /**
+     * Submit a scan of a transaction, will be called by the transaction
+     * @param transactionId the transaction id
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range
+     */
+    synchronized void submitScan(int transactionId, int firstVariableId, int lastVariableId) {
+        database.advance();
+        database.transactionManager.handleNewRequest(Operation.scan(transactionId, firstVariableId, lastVariableId, database.time), database.time);
+        complete();
+    }
+
+    /**
+     * Submit the commit of a transaction, will be called by the transaction
+     * @param transactionId the transaction id
+     */
+    synchronized void submitCommit(int transactionId) {
+        database.advance();
+        database.transactionManager.handleNewRequest(new Operation(OperationType.COMMIT, transactionId, database.time), database.time);
+        database.transactionManager.retry(database.time);
+        complete();
+    }
+
+    /**
+     * Abort a transaction and drop its waiting operations, will be called by the transaction
+     * @param transactionId the transaction id
+     */
+    synchronized void cancel(int transactionId) {
+        database.cancel(transactionId);
+        complete();
+    }
+
+    /**
+     * Check that a variable exists, will be called by the transaction
+     * @param variableId the variable id
+     */
+    synchronized void checkVariable(int variableId) {
+        if (database.transactionManager.getDataInfo(variableId) == null) {
+            throw new IllegalArgumentException("x" + variableId + " does not exist");
+        }
+    }
+
+    /**
+     * Helper method for checking that a site exists
+     * @param siteId the site id
+     */
+    private void checkSite(int siteId) {
+        if (!database.sites.containsKey(siteId)) {
+            throw new IllegalArgumentException("site " + siteId + " does not exist");
+        }
+    }
+
+    /**
+     * Helper method for completing the futures of the call, in the order the engine reported them
+     * side effect: will empty completions
+     */
+    private void complete() {
+        Runnable completion;
+        while ((completion = completions.poll()) != null) {
+            completion.run();
+        }
+    }
+
+    /**
+     * the printer of the handle, which turns the results the engine reports into completions of the futures
+     * The other output, such as dumps and verbose traces, is dropped.
+     */
+    private class EventPrinter extends OutputPrinter {
+
+        EventPrinter() {
+            super(false);
+            setBuffering(false);
+        }
+
+        @Override
+        public void dumpSite(int siteId, Map<Integer, Integer> values) {
+        }
+
+        @Override
+        public void printReadSuccess(int variableId, int value, int transactionId) {
+            EmbeddedTransaction transaction = transactions.get(transactionId);
+            if (transaction != null) {
+                completions.add(() -> transaction.completeRead(value));
+            }
+        }
+
+        @Override
+        public void printScanSuccess(SortedMap<Integer, Integer> values, int transactionId) {
+            EmbeddedTransaction transaction = transactions.get(transactionId);
+            if (transaction != null) {
+                SortedMap<Integer, Integer> result = Collections.unmodifiableSortedMap(new TreeMap<>(values));
+                completions.add(() -> transaction.completeScan(result));
+            }
+        }
+
+        @Override
+        public void printWriteSuccess(int variableId, int value, int transactionId) {
+            EmbeddedTransaction transaction = transactions.get(transactionId);
+            if (transaction != null) {
+                completions.add(transaction::completeWrite);
+            }
+        }
+
+        @Override
+        public void printCommitSuccess(int transactionId) {
+            EmbeddedTransaction transaction = transactions.remove(transactionId);
+            if (transaction != null) {
+                completions.add(() -> transaction.end(TransactionOutcome.COMMITTED));
+            }
+        }
+
+        @Override
+        public void printAbortSuccess(int transactionId) {
+            EmbeddedTransaction transaction = transactions.remove(transactionId);
+            if (transaction != null) {
+                completions.add(() -> transaction.end(TransactionOutcome.ABORTED));
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package src.main.java;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * a transaction handle of an embedded database
+ * Reads, scans and writes return futures that complete when the operation goes through. The operations of a transaction run in
+ * the order they were submitted, so their futures complete in that order too. If the transaction aborts, the futures still
+ * waiting complete exceptionally with an IllegalStateException, and the operations submitted afterwards are not executed.
+ */
+public class EmbeddedTransaction {
+    private EmbeddedDatabase database;
+    private int id;
+    private Deque<CompletableFuture<?>> pending;   // the futures of the operations that did not go through yet, in order
+    private CompletableFuture<TransactionOutcome> outcome;
+    private boolean commitSubmitted;
+
+    /**
+     * Initialize the handle, will be called by the database when the transaction begins
+     * @param database the database
+     * @param id the transaction id
+     */
+    EmbeddedTransaction(EmbeddedDatabase database, int id) {
+        this.database = database;
+        this.id = id;
+        pending = new ArrayDeque<>();
+        outcome = new CompletableFuture<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Read a variable
+     * @param variableId the variable id
+     * @return the value read, once the read goes through
+     * @throws IllegalArgumentException if the variable does not exist
+     * @throws IllegalStateException if the transaction already committed or aborted
+     */
+    public CompletableFuture<Integer> read(int variableId) {
+        synchronized (database) {
+            database.checkVariable(variableId);
+            CompletableFuture<Integer> result = enqueue();
+            if (!result.isDone()) {
+                database.submit(OperationType.READ, id, variableId, 0);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Read a range of variables at once
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @return <key : variable id, value : value read>, once the scan goes through
+     * @throws IllegalStateException if the transaction already committed or aborted
+     */
+    public CompletableFuture<SortedMap<Integer, Integer>> scan(int firstVariableId, int lastVariableId) {
+        synchronized (database) {
+            CompletableFuture<SortedMap<Integer, Integer>> result = enqueue();
+            if (!result.isDone()) {
+                database.submitScan(id, firstVariableId, lastVariableId);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Write a variable, the value is only visible to other transactions after the commit
+     * @param variableId the variable id
+     * @param value the value
+     * @return completes once the write goes through
+     * @throws IllegalArgumentException if the variable does not exist
+     * @throws IllegalStateException if the transaction already committed or aborted
+     */
+    public CompletableFuture<Void> write(int variableId, int value) {
+        synchronized (database) {
+            database.checkVariable(variableId);
+            CompletableFuture<Void> result = enqueue();
+            if (!result.isDone()) {
+                database.submit(OperationType.WRITE, id, variableId, value);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * End the transaction, which commits unless it has to abort
+     * @return the outcome, once the operations before the commit went through
+     */
+    public CompletableFuture<TransactionOutcome> commit() {
+        synchronized (database) {
+            if (!commitSubmitted && !outcome.isDone()) {
+                commitSubmitted = true;
+                database.submitCommit(id);
+            }
+            return outcome;
+        }
+    }
+
+    /**
+     * Abort the transaction and drop its waiting operations
+     * @return the outcome, ABORTED unless it already committed
+     */
+    public CompletableFuture<TransactionOutcome> abort() {
+        synchronized (database) {
+            if (!outcome.isDone()) {
+                database.cancel(id);
+            }
+            return outcome;
+        }
+    }
+
+    /**
+     * Getting the outcome, without ending the transaction
+     * @return completes when the transaction commits or aborts
+     */
+    public CompletableFuture<TransactionOutcome> getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * Complete the oldest waiting read, will be called by the database
+     * @param value the value read
+     */
+    @SuppressWarnings("unchecked")
+    void completeRead(int value) {
+        ((CompletableFuture<Integer>) pending.poll()).complete(value);
+    }
+
+    /**
+     * Complete the oldest waiting scan, will be called by the database
+     * @param values <key : variable id, value : value read>
+     */
+    @SuppressWarnings("unchecked")
+    void completeScan(SortedMap<Integer, Integer> values) {
+        ((CompletableFuture<SortedMap<Integer, Integer>>) pending.poll()).complete(values);
+    }
+
+    /**
+     * Complete the oldest waiting write, will be called by the database
+     */
+    @SuppressWarnings("unchecked")
+    void completeWrite() {
+        ((CompletableFuture<Void>) pending.poll()).complete(null);
+    }
+
+    /**
+     * Record the outcome, will be called by the database when the transaction commits or aborts
+     * side effect: will fail the futures still waiting
+     * @param transactionOutcome the outcome
+     */
+    void end(TransactionOutcome transactionOutcome) {
+        CompletableFuture<?> waiting;
+        while ((waiting = pending.poll()) != null) {
+            waiting.completeExceptionally(new IllegalStateException("T" + id + " " + transactionOutcome.name().toLowerCase() + " before the operation went through"));
+        }
+        outcome.complete(transactionOutcome);
+    }
+
+    /**
+     * Helper method for adding the future of a new operation
+     * @param <T> the type of the result
+     * @return the future, already failed if the transaction aborted
+     * @throws IllegalStateException if the commit was already submitted
+     */
+    private <T> CompletableFuture<T> enqueue() {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (commitSubmitted || outcome.getNow(null) == TransactionOutcome.COMMITTED) {
+            throw new IllegalStateException("T" + id + " already ended");
+        }
+        if (outcome.isDone()) {
+            result.completeExceptionally(new IllegalStateException("T" + id + " aborted"));
+            return result;
+        }
+        pending.add(result);
+        return result;
+    }
+}
@@ -0,0 +1,90 @@
+package src.main.java;
+
+import javafx.util.Pair;
+
+import java.util.*;
+
+/**
+ * keeps every data copy as a DataCopy object on the heap, the default store
+ */
+public class HeapVersionStore implements VersionStore {
+    private Map<Integer, DataCopy> dataCopies;  // <key : variable id, value : data copy>
+    private VersionSegment versionSegment;  // the old versions spilled by the copies, null until a heap budget is set
+    private int heapVersions;   // the most versions a copy keeps on the heap, 0 for no limit
+
+    public HeapVersionStore() {
+        dataCopies = new HashMap<>();
+    }
+
+    @Override
+    public boolean contains(int variableId) {
+        return dataCopies.containsKey(variableId);
+    }
+
+    @Override
+    public List<Integer> getVariableIds() {
+        return new ArrayList<>(dataCopies.keySet());
+    }
+
+    @Override
+    public int size() {
+        return dataCopies.size();
+    }
+
+    @Override
+    public void create(int variableId, DataType dataType, int initialValue) {
+        install(variableId, new DataCopy(dataType, initialValue));
+    }
+
+    @Override
+    public DataCopy export(int variableId) {
+        return dataCopies.get(variableId);
+    }
+
+    @Override
+    public void install(int variableId, DataCopy dataCopy) {
+        if (versionSegment != null) {
+            dataCopy.setVersionStore(versionSegment, heapVersions);
+        }
+        dataCopies.put(variableId, dataCopy);
+    }
+
+    @Override
+    public void remove(int variableId) {
+        dataCopies.remove(variableId);
+    }
+
+    @Override
+    public DataType getDataType(int variableId) {
+        return dataCopies.get(variableId).getDataType();
+    }
+
+    @Override
+    public int getLatestCommitValue(int variableId) {
+        return dataCopies.get(variableId).getLatestCommitValue();
+    }
+
+    @Override
+    public int getLatestCommitTime(int variableId) {
+        return dataCopies.get(variableId).getLatestCommitTime();
+    }
+
+    @Override
+    public Pair<Integer, Integer> getSnapshot(int variableId, int timestamp) {
+        return dataCopies.get(variableId).getSnapshot(timestamp);
+    }
+
+    @Override
+    public void commit(int variableId, int time, int value) {
+        dataCopies.get(variableId).addCommitHistory(time, value);
+    }
+
+    @Override
+    public void setHeapVersions(VersionSegment versionSegment, int heapVersions) {
+        this.versionSegment = versionSegment;
+        this.heapVersions = heapVersions;
+        for (DataCopy dataCopy : dataCopies.values()) {
+            dataCopy.setVersionStore(versionSegment, heapVersions);
+        }
+    }
+}
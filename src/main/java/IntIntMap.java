@@ -0,0 +1,139 @@
+package src.main.java;
+
+import java.util.Arrays;
+
+/**
+ * a map from int to int with open addressing, so that putting and getting box nothing and allocate nothing until it grows
+ * Keys are variable or site ids, Integer.MIN_VALUE can not be a key. Entries are never removed.
+ * The entries are visited by slot: for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)).
+ */
+public class IntIntMap {
+    private static final int EMPTY = Integer.MIN_VALUE;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * @param expectedSize the number of entries that fit before the map grows
+     */
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Getting the number of entries
+     * @return the number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check whether a key is in the map
+     * @param key the key
+     * @return true if the key has a value
+     */
+    public boolean containsKey(int key) {
+        return keys[find(key)] == key;
+    }
+
+    /**
+     * Getting the value of a key
+     * @param key the key
+     * @param defaultValue the value returned if the key is not in the map
+     * @return the value of the key, defaultValue if there is none
+     */
+    public int get(int key, int defaultValue) {
+        int slot = find(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Set the value of a key
+     * side effect: will change the map, might grow it
+     * @param key the key, not Integer.MIN_VALUE
+     * @param value the value
+     */
+    public void put(int key, int value) {
+        int slot = find(key);
+        if (keys[slot] != key) {
+            // keep at most half of the slots used
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+                slot = find(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Getting the next slot holding an entry
+     * @param slot the current slot, -1 to start
+     * @return the next used slot, -1 if there is none
+     */
+    public int nextSlot(int slot) {
+        for (int next = slot + 1; next < keys.length; next++) {
+            if (keys[next] != EMPTY) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Getting the key of a slot
+     * @param slot a used slot
+     * @return the key
+     */
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /**
+     * Getting the value of a slot
+     * @param slot a used slot
+     * @return the value
+     */
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Helper method for finding the slot of a key, probing linearly from its hash
+     * @param key the key
+     * @return the slot holding the key, or the empty slot where it would go
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = (key * 0x9E3779B9 >>> 16) & mask;
+        while (keys[slot] != key && keys[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Helper method for doubling the slots
+     * side effect: will change keys and values
+     */
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                int newSlot = find(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package src.main.java;
+
+public enum LengthDistribution {
+    FIXED, UNIFORM, GEOMETRIC
+}
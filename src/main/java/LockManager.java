@@ -5,14 +5,15 @@ import java.util.*;
 
 public class LockManager {
 
-    private Map<Integer, Map<Integer,LockType>> lockTable;
+    private NavigableMap<Integer, Map<Integer,LockType>> lockTable;    // <key : variable id, value : <key : transaction id, value : lock type>>, only variables with locks
+    private Map<Integer, List<int[]>> rangeLocks;  // <key : transaction id, value : the [first, last] variable ranges it read locked>
 
     /**
      * Initialize the lock manager
      */
     public LockManager(){
-        lockTable = new HashMap<>();
-
+        lockTable = new TreeMap<>();
+        rangeLocks = new HashMap<>();
     }
 
     /**
@@ -24,7 +25,7 @@ public class LockManager {
      * @return if acquire lock successfully, return empty set; if blocked, return a set containing conflicting transactions
      */
     public Set<Integer> acquireLock(int transactionId, int variableId, LockType lockType) {
-        Map<Integer, LockType> locks = lockTable.getOrDefault(variableId, new HashMap<>());
+        Map<Integer, LockType> locks = lockTable.getOrDefault(variableId, Collections.emptyMap());
         Set<Integer> conflictingTransactions = new HashSet<>();
 
         // if acquiring read lock
@@ -41,8 +42,15 @@ public class LockManager {
             return new HashSet<>();
         }
 
+        // a range read lock of another transaction covering the variable blocks the write lock, only transactions with a scan in progress hold one
+        for (int transaction : rangeLocks.keySet()) {
+            if (transaction != transactionId && rangeCovers(rangeLocks.get(transaction), variableId)) {
+                conflictingTransactions.add(transaction);
+            }
+        }
+
         // if acquire write lock successfully
-        if (locks.keySet().isEmpty() || (locks.keySet().size() == 1 && locks.containsKey(transactionId))) {
+        if (conflictingTransactions.isEmpty() && (locks.keySet().isEmpty() || (locks.keySet().size() == 1 && locks.containsKey(transactionId)))) {
             addLock(lockType, transactionId, variableId);
             return new HashSet<>();
         }
@@ -54,6 +62,86 @@ public class LockManager {
         return conflictingTransactions;
     }
 
+    /**
+     * Acquire the write locks of several variables in one pass, in ascending variable order
+     * The locks that could be acquired are kept, the caller releases them if any lock is refused.
+     * side effect: might change lockTable
+     * @param transactionId the transaction acquiring the locks
+     * @param variableIds the variables in ascending order
+     * @return if all locks are acquired, return empty set; otherwise, return all the conflicting transactions
+     */
+    public Set<Integer> acquireWriteLocks(int transactionId, List<Integer> variableIds) {
+        Set<Integer> conflictingTransactions = new HashSet<>();
+        for (int variableId : variableIds) {
+            conflictingTransactions.addAll(acquireLock(transactionId, variableId, LockType.WRITE));
+        }
+        conflictingTransactions.remove(transactionId);
+        return conflictingTransactions;
+    }
+
+    /**
+     * Acquire a single read lock on a range of variables instead of one lock per variable, used by scans
+     * side effect: might change rangeLocks
+     * @param transactionId the transaction acquiring the lock
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @return if acquire lock successfully, return empty set; if blocked, return the transactions holding write locks in the range
+     */
+    public Set<Integer> acquireRangeLock(int transactionId, int firstVariableId, int lastVariableId) {
+        Set<Integer> conflictingTransactions = getRangeLockConflicts(transactionId, firstVariableId, lastVariableId);
+        if (!conflictingTransactions.isEmpty()) {
+            return conflictingTransactions;
+        }
+
+        // acquire range lock successfully, unless the same range is already held
+        List<int[]> ranges = rangeLocks.getOrDefault(transactionId, new ArrayList<>());
+        for (int[] range : ranges) {
+            if (range[0] <= firstVariableId && range[1] >= lastVariableId) {
+                return conflictingTransactions;
+            }
+        }
+        ranges.add(new int[]{firstVariableId, lastVariableId});
+        rangeLocks.put(transactionId, ranges);
+        return conflictingTransactions;
+    }
+
+    /**
+     * Find the transactions that would block a range read lock, without acquiring it
+     * @param transactionId the transaction acquiring the lock
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @return the transactions holding write locks in the range, empty if the range lock can be acquired
+     */
+    public Set<Integer> getRangeLockConflicts(int transactionId, int firstVariableId, int lastVariableId) {
+        Set<Integer> conflictingTransactions = new HashSet<>();
+        if (firstVariableId > lastVariableId) {
+            return conflictingTransactions;
+        }
+        for (Map<Integer, LockType> locks : lockTable.subMap(firstVariableId, true, lastVariableId, true).values()) {
+            for (int transaction : locks.keySet()) {
+                if (transaction != transactionId && locks.get(transaction) == LockType.WRITE) {
+                    conflictingTransactions.add(transaction);
+                }
+            }
+        }
+        return conflictingTransactions;
+    }
+
+    /**
+     * Helper method for checking whether one of the ranges contains a variable
+     * @param ranges the [first, last] ranges
+     * @param variableId the variable id
+     * @return true if a range contains the variable
+     */
+    private boolean rangeCovers(List<int[]> ranges, int variableId) {
+        for (int[] range : ranges) {
+            if (range[0] <= variableId && range[1] >= variableId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Release a single write lock, will only be called if the transaction failed to get write locks on all the available sites
      * side effect: will change lock table
@@ -63,17 +151,29 @@ public class LockManager {
      */
     public void releaseWriteLock(int transactionId, int variableId, boolean holdingReadLock) {
         // remove the lock
-        Map<Integer, LockType> locks = lockTable.getOrDefault(variableId, new HashMap<>());
-        if (locks.containsKey(transactionId)) {
-            locks.remove(transactionId);
-        }
-        lockTable.put(variableId, locks);
+        releaseLock(transactionId, variableId);
         // if the transaction is holding read lock previously, need to add back the read lock
         if (holdingReadLock) {
             addLock(LockType.READ, transactionId, variableId);
         }
     }
 
+    /**
+     * Release the lock of a transaction on a single variable, will be called if a transaction failed to take all its declared locks
+     * side effect: might change lock table
+     * @param transactionId the transaction id
+     * @param variableId the variable id
+     */
+    public void releaseLock(int transactionId, int variableId) {
+        Map<Integer, LockType> locks = lockTable.get(variableId);
+        if (locks != null) {
+            locks.remove(transactionId);
+            if (locks.isEmpty()) {
+                lockTable.remove(variableId);
+            }
+        }
+    }
+
     /**
      * Remove all the locks that this transaction has, will be called when commit or abort
      * side effect: might change lock table
@@ -81,11 +181,15 @@ public class LockManager {
      */
     public void releaseAllLocks(int transactionId) {
         // remove this transaction from lock table
-        for (int variableId : lockTable.keySet()) {
-            Map<Integer, LockType> locks = lockTable.get(variableId);
+        Iterator<Map<Integer, LockType>> iterator = lockTable.values().iterator();
+        while (iterator.hasNext()) {
+            Map<Integer, LockType> locks = iterator.next();
             locks.remove(transactionId);
+            if (locks.isEmpty()) {
+                iterator.remove();
+            }
         }
-
+        rangeLocks.remove(transactionId);
     }
 
     /**
@@ -94,6 +198,7 @@ public class LockManager {
      */
     public void clear() {
         lockTable.clear();
+        rangeLocks.clear();
     }
 
 
@@ -114,6 +219,23 @@ public class LockManager {
         lockTable.put(variableId, locks);
     }
 
+    /**
+     * Check whether any transaction holds a lock on a variable, including a range lock covering it
+     * @param variableId the variable id
+     * @return true if the variable is locked
+     */
+    public boolean isLocked(int variableId) {
+        if (lockTable.containsKey(variableId) && !lockTable.get(variableId).isEmpty()) {
+            return true;
+        }
+        for (List<int[]> ranges : rangeLocks.values()) {
+            if (rangeCovers(ranges, variableId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Check whether the transaction is holding the lock
      * @param lockType the lock type
@@ -122,6 +244,9 @@ public class LockManager {
      * @return true if the transaction is holding the lock, false if not
      */
     public boolean isHoldingLock(LockType lockType, int variableId, int transactionId) {
+        if (lockType == LockType.READ && rangeLocks.containsKey(transactionId) && rangeCovers(rangeLocks.get(transactionId), variableId)) {
+            return true;
+        }
         if (!lockTable.containsKey(variableId)) {
             return false;
         }
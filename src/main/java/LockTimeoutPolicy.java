@@ -0,0 +1,59 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * lets transactions wait freely, but aborts any transaction that has been blocked for more than a number of ticks
+ */
+public class LockTimeoutPolicy implements DeadlockPolicy {
+    private final int timeout;
+    private final Map<Integer, Integer> waitingSince;  // <key : transactionId, value : the tick at which it started waiting>
+
+    /**
+     * Initialize the policy
+     * @param timeout the number of ticks a transaction may stay blocked
+     */
+    public LockTimeoutPolicy(int timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("the lock wait timeout must be positive");
+        }
+        this.timeout = timeout;
+        this.waitingSince = new HashMap<>();
+    }
+
+    @Override
+    public Set<Integer> onWait(TransactionManager transactionManager, int requester, Set<Integer> holders, int currentTime) {
+        if (!waitingSince.containsKey(requester)) {
+            waitingSince.put(requester, currentTime);
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean onTick(TransactionManager transactionManager, int currentTime) {
+        boolean aborted = false;
+        Iterator<Map.Entry<Integer, Integer>> iterator = waitingSince.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, Integer> entry = iterator.next();
+            Transaction transaction = transactionManager.getTransaction(entry.getKey());
+
+            // the wait is over once the transaction runs again or finished
+            if (transaction.getStatus() != TransactionStatus.BLOCKED) {
+                iterator.remove();
+                continue;
+            }
+
+            if (currentTime - entry.getValue() > timeout) {
+                iterator.remove();
+                transactionManager.abortVictim(entry.getKey());
+                aborted = true;
+            }
+        }
+        return aborted;
+    }
+
+    @Override
+    public String getName() {
+        return "timeout:" + timeout;
+    }
+}
@@ -0,0 +1,27 @@
+package src.main.java;
+
+import java.util.List;
+
+/**
+ * hash partitioning by variable id: variable i starts on the (i % n)-th site, and its replicas on the next sites
+ */
+public class ModuloPlacement implements PlacementPolicy {
+    private final int replicationFactor;
+
+    /**
+     * @param replicationFactor the number of copies of every variable
+     */
+    public ModuloPlacement(int replicationFactor) {
+        this.replicationFactor = replicationFactor;
+    }
+
+    @Override
+    public List<Integer> getSites(int variableId, int variableCount, List<Integer> siteIds) {
+        return PlacementPolicy.consecutiveSites(variableId % siteIds.size(), replicationFactor, siteIds);
+    }
+
+    @Override
+    public String getName() {
+        return "modulo:" + replicationFactor;
+    }
+}
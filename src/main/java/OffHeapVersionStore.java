@@ -0,0 +1,214 @@
+package src.main.java;
+
+import javafx.util.Pair;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * keeps the data copies outside the GC heap, in direct byte buffers, so a site holding millions of copies adds no objects to scan
+ * A slot table indexed by variable id holds, for every variable, its flags, its number of versions and where its versions are.
+ * The versions of a variable are consecutive (commit time, value) records in an arena of direct chunks, in commit order, so a
+ * snapshot read is a binary search. When a variable runs out of room its records are copied to a block twice as large, and the
+ * old block is left unused, so at most half of the arena is wasted.
+ */
+public class OffHeapVersionStore implements VersionStore {
+    private static final int SLOT_BYTES = 24;
+    private static final int RECORD_BYTES = 8;
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int INITIAL_VERSIONS = 4;
+    // the flags of a slot
+    private static final int HELD = 1;
+    private static final int REPLICATED = 2;
+
+    private ByteBuffer slots;   // {flags, number of versions, capacity in versions, unused, block address} per variable id
+    private int size;
+    private List<ByteBuffer> chunks;
+    private int chunkOffset;    // the first free byte of the last chunk
+
+    public OffHeapVersionStore() {
+        slots = ByteBuffer.allocateDirect(64 * SLOT_BYTES);
+        chunks = new ArrayList<>();
+    }
+
+    @Override
+    public boolean contains(int variableId) {
+        return variableId >= 0 && variableId < slots.capacity() / SLOT_BYTES && (slots.getInt(slot(variableId)) & HELD) != 0;
+    }
+
+    @Override
+    public List<Integer> getVariableIds() {
+        List<Integer> variableIds = new ArrayList<>();
+        for (int variableId = 0; variableId < slots.capacity() / SLOT_BYTES; variableId++) {
+            if ((slots.getInt(slot(variableId)) & HELD) != 0) {
+                variableIds.add(variableId);
+            }
+        }
+        return variableIds;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void create(int variableId, DataType dataType, int initialValue) {
+        createSlot(variableId, dataType, INITIAL_VERSIONS);
+        commit(variableId, -1, initialValue);
+    }
+
+    @Override
+    public DataCopy export(int variableId) {
+        if (!contains(variableId)) {
+            return null;
+        }
+        int slot = slot(variableId);
+        long block = slots.getLong(slot + 16);
+        ByteBuffer chunk = chunks.get((int) (block >>> 32));
+        int offset = (int) block;
+        DataCopy dataCopy = new DataCopy(getDataType(variableId), chunk.getInt(offset + 4));
+        for (int i = 1; i < slots.getInt(slot + 4); i++) {
+            dataCopy.addCommitHistory(chunk.getInt(offset + i * RECORD_BYTES), chunk.getInt(offset + i * RECORD_BYTES + 4));
+        }
+        return dataCopy;
+    }
+
+    @Override
+    public void install(int variableId, DataCopy dataCopy) {
+        List<Pair<Integer, Integer>> commitHistory = dataCopy.getCommitHistory();
+        createSlot(variableId, dataCopy.getDataType(), Math.max(INITIAL_VERSIONS, commitHistory.size()));
+        for (Pair<Integer, Integer> version : commitHistory) {
+            commit(variableId, version.getKey(), version.getValue());
+        }
+    }
+
+    @Override
+    public void remove(int variableId) {
+        if (contains(variableId)) {
+            slots.putInt(slot(variableId), 0);
+            size--;
+        }
+    }
+
+    @Override
+    public DataType getDataType(int variableId) {
+        return (slots.getInt(slot(variableId)) & REPLICATED) != 0 ? DataType.REPLICATED : DataType.NOT_REPLICATED;
+    }
+
+    @Override
+    public int getLatestCommitValue(int variableId) {
+        return getRecordInt(variableId, slots.getInt(slot(variableId) + 4) - 1, 4);
+    }
+
+    @Override
+    public int getLatestCommitTime(int variableId) {
+        return getRecordInt(variableId, slots.getInt(slot(variableId) + 4) - 1, 0);
+    }
+
+    @Override
+    public Pair<Integer, Integer> getSnapshot(int variableId, int timestamp) {
+        int low = 0;
+        int high = slots.getInt(slot(variableId) + 4) - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getRecordInt(variableId, middle, 0) < timestamp) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return new Pair<>(getRecordInt(variableId, low, 0), getRecordInt(variableId, low, 4));
+    }
+
+    @Override
+    public void commit(int variableId, int time, int value) {
+        int slot = slot(variableId);
+        int count = slots.getInt(slot + 4);
+        int capacity = slots.getInt(slot + 8);
+        long block = slots.getLong(slot + 16);
+        if (count == capacity) {
+            // move the records to a block twice as large
+            long newBlock = allocate(capacity * 2 * RECORD_BYTES);
+            ByteBuffer from = chunks.get((int) (block >>> 32)).duplicate();
+            from.position((int) block).limit((int) block + count * RECORD_BYTES);
+            ByteBuffer to = chunks.get((int) (newBlock >>> 32)).duplicate();
+            to.position((int) newBlock);
+            to.put(from);
+            block = newBlock;
+            slots.putInt(slot + 8, capacity * 2);
+            slots.putLong(slot + 16, block);
+        }
+        ByteBuffer chunk = chunks.get((int) (block >>> 32));
+        chunk.putInt((int) block + count * RECORD_BYTES, time);
+        chunk.putInt((int) block + count * RECORD_BYTES + 4, value);
+        slots.putInt(slot + 4, count + 1);
+    }
+
+    /**
+     * Helper method for starting a slot with no versions and an empty block
+     * side effect: might grow the slot table and the arena
+     * @param variableId the variable id
+     * @param dataType REPLICATED or NOT_REPLICATED
+     * @param capacity the number of versions the block can hold
+     */
+    private void createSlot(int variableId, DataType dataType, int capacity) {
+        if (variableId >= slots.capacity() / SLOT_BYTES) {
+            int slotCount = slots.capacity() / SLOT_BYTES;
+            while (slotCount <= variableId) {
+                slotCount *= 2;
+            }
+            ByteBuffer grown = ByteBuffer.allocateDirect(slotCount * SLOT_BYTES);
+            slots.clear();
+            grown.put(slots);
+            slots = grown;
+        }
+        if (!contains(variableId)) {
+            size++;
+        }
+        int slot = slot(variableId);
+        int flags = HELD | (dataType == DataType.REPLICATED ? REPLICATED : 0);
+        slots.putInt(slot, flags);
+        slots.putInt(slot + 4, 0);
+        slots.putInt(slot + 8, capacity);
+        slots.putLong(slot + 16, allocate(capacity * RECORD_BYTES));
+    }
+
+    /**
+     * Helper method for taking room in the arena, a block never spans two chunks
+     * side effect: might add a chunk
+     * @param bytes the size of the block
+     * @return the address of the block, the chunk index in the high 32 bits and the offset in the low 32 bits
+     */
+    private long allocate(int bytes) {
+        if (chunks.isEmpty() || chunkOffset + bytes > chunks.get(chunks.size() - 1).capacity()) {
+            chunks.add(ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, bytes)));
+            chunkOffset = 0;
+        }
+        long address = ((long) (chunks.size() - 1) << 32) | chunkOffset;
+        chunkOffset += bytes;
+        return address;
+    }
+
+    /**
+     * Helper method for reading the time or the value of a version
+     * @param variableId the variable id
+     * @param index the index of the version, 0 for the oldest
+     * @param field 0 for the commit time, 4 for the value
+     * @return the field
+     */
+    private int getRecordInt(int variableId, int index, int field) {
+        long block = slots.getLong(slot(variableId) + 16);
+        return chunks.get((int) (block >>> 32)).getInt((int) block + index * RECORD_BYTES + field);
+    }
+
+    /**
+     * Helper method for the position of the slot of a variable in the slot table
+     * @param variableId the variable id
+     * @return the byte offset
+     */
+    private static int slot(int variableId) {
+        return variableId * SLOT_BYTES;
+    }
+}
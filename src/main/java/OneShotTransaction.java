@@ -0,0 +1,132 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * A transaction whose operations are all known when it is submitted, e.g. oneshot(T5,R(x1),W(x2,20))
+ * It runs at once inside the sequencer and never waits on the waits-for graph.
+ */
+public class OneShotTransaction {
+    private int transactionId;
+    private int submitTime;
+    private List<Operation> operations;   // the reads and writes in submission order
+    private Map<Integer, Integer> readSites;    // <key : variable id, value : the site it is read from>, only for the variables read before written
+    private Map<Integer, Set<Integer>> lockedSites;  // <key : site id, value : the variables locked there>
+    private int[] readValues;   // the value of each operation that is a read, filled by the read phase
+
+    /**
+     * Initialize a one-shot transaction
+     * @param transactionId the transaction id
+     * @param submitTime the time the transaction was submitted
+     * @param operations the reads and writes in submission order
+     */
+    public OneShotTransaction(int transactionId, int submitTime, List<Operation> operations) {
+        this.transactionId = transactionId;
+        this.submitTime = submitTime;
+        this.operations = operations;
+        this.readSites = new HashMap<>();
+        this.lockedSites = new TreeMap<>();
+        this.readValues = new int[operations.size()];
+    }
+
+    /**
+     * Getting the transaction id
+     * @return the transaction id
+     */
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    /**
+     * Getting the submission time
+     * @return the time the transaction was submitted
+     */
+    public int getSubmitTime() {
+        return submitTime;
+    }
+
+    /**
+     * Getting the operations
+     * @return the reads and writes in submission order
+     */
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    /**
+     * Getting the sites the stored reads are read from, set when the locks are granted
+     * @return <key : variable id, value : the site it is read from>
+     */
+    public Map<Integer, Integer> getReadSites() {
+        return readSites;
+    }
+
+    /**
+     * Getting the variables locked on each site, set when the locks are granted
+     * @return <key : site id, value : the variables locked there>
+     */
+    public Map<Integer, Set<Integer>> getLockedSites() {
+        return lockedSites;
+    }
+
+    /**
+     * Getting the variables the transaction reads before writing them, their values have to come from a site
+     * @return the variable ids in ascending order
+     */
+    public SortedSet<Integer> getStoredReads() {
+        SortedSet<Integer> storedReads = new TreeSet<>();
+        Set<Integer> written = new HashSet<>();
+        for (Operation operation : operations) {
+            if (operation.getType() == OperationType.WRITE) {
+                written.add(operation.getVariableId());
+            } else if (!written.contains(operation.getVariableId())) {
+                storedReads.add(operation.getVariableId());
+            }
+        }
+        return storedReads;
+    }
+
+    /**
+     * Getting the variables the transaction writes
+     * @return the variable ids in ascending order
+     */
+    public SortedSet<Integer> getWrites() {
+        SortedSet<Integer> writes = new TreeSet<>();
+        for (Operation operation : operations) {
+            if (operation.getType() == OperationType.WRITE) {
+                writes.add(operation.getVariableId());
+            }
+        }
+        return writes;
+    }
+
+    /**
+     * Read every value the transaction needs from the sites chosen when its locks were granted
+     * Only reads the data managers.
+     * side effect: will change the read values of this transaction
+     * @param sites <key : siteId, value : site>
+     */
+    public void readPhase(Map<Integer, Site> sites) {
+        Map<Integer, Integer> written = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            int variableId = operation.getVariableId();
+            if (operation.getType() == OperationType.WRITE) {
+                written.put(variableId, operation.getValueToWrite());
+            } else if (written.containsKey(variableId)) {
+                readValues[i] = written.get(variableId);
+            } else {
+                readValues[i] = sites.get(readSites.get(variableId)).getDataManager().read(variableId);
+            }
+        }
+    }
+
+    /**
+     * Getting the value read by an operation in the read phase
+     * @param index the index of the read operation
+     * @return the value
+     */
+    public int getReadValue(int index) {
+        return readValues[index];
+    }
+}
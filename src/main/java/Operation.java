@@ -1,10 +1,19 @@
 package src.main.java;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
 public class Operation {
     private OperationType type;
     private int transactionId;
     private int variableId;
     private int valueToWrite;
+    private int lastVariableId; // the end of the range of a scan, inclusive
+    private SortedMap<Integer, Integer> writes; // <key : variable id, value : value to write> of a multi-write
+    private SortedSet<Integer> declaredReads;   // the variables a begin declares it will read, null if nothing is declared
+    private SortedSet<Integer> declaredWrites;  // the variables a begin declares it will write, null if nothing is declared
     private int arrivingTime;
 
     /**
@@ -49,6 +58,48 @@ public class Operation {
         this.arrivingTime = arrivingTime;
     }
 
+    /**
+     * Create a scan operation
+     * @param transactionId the transacationId for this operation
+     * @param firstVariableId the first variable of the range
+     * @param lastVariableId the last variable of the range, inclusive
+     * @param arrivingTime the time this operation arrived
+     * @return the scan operation
+     */
+    public static Operation scan(int transactionId, int firstVariableId, int lastVariableId, int arrivingTime) {
+        Operation operation = new Operation(OperationType.SCAN, transactionId, firstVariableId, arrivingTime);
+        operation.lastVariableId = lastVariableId;
+        return operation;
+    }
+
+    /**
+     * Create a multi-write operation
+     * @param transactionId the transacationId for this operation
+     * @param writes the variables to write and their values, must not be empty
+     * @param arrivingTime the time this operation arrived
+     * @return the multi-write operation
+     */
+    public static Operation multiWrite(int transactionId, SortedMap<Integer, Integer> writes, int arrivingTime) {
+        Operation operation = new Operation(OperationType.MULTI_WRITE, transactionId, writes.firstKey(), arrivingTime);
+        operation.writes = writes;
+        return operation;
+    }
+
+    /**
+     * Create a begin operation that declares the access set of the transaction, the transaction takes all its locks at begin
+     * @param transactionId the transacationId for this operation
+     * @param declaredReads the variables the transaction will read
+     * @param declaredWrites the variables the transaction will write
+     * @param arrivingTime the time this operation arrived
+     * @return the begin operation
+     */
+    public static Operation declaredBegin(int transactionId, SortedSet<Integer> declaredReads, SortedSet<Integer> declaredWrites, int arrivingTime) {
+        Operation operation = new Operation(OperationType.BEGIN, transactionId, arrivingTime);
+        operation.declaredReads = declaredReads;
+        operation.declaredWrites = declaredWrites;
+        return operation;
+    }
+
     /**
      * Getting the type of the Operation
      * @return the type of the Operation 
@@ -81,6 +132,90 @@ public class Operation {
         return valueToWrite;
     }
 
+    /**
+     * Getting the last variable of a scan
+     * @return the last variable of the range, inclusive
+     */
+    public int getLastVariableId() {
+        return lastVariableId;
+    }
+
+    /**
+     * Getting the variables and values of a multi-write
+     * @return the values to write in ascending variable order
+     */
+    public SortedMap<Integer, Integer> getWrites() {
+        return writes;
+    }
+
+    /**
+     * Check whether a begin declares the access set of its transaction
+     * @return true if the access set is declared
+     */
+    public boolean hasDeclaredAccess() {
+        return declaredReads != null;
+    }
+
+    /**
+     * Getting the variables a begin declares it will read
+     * @return the declared read set
+     */
+    public SortedSet<Integer> getDeclaredReads() {
+        return declaredReads;
+    }
+
+    /**
+     * Getting the variables a begin declares it will write
+     * @return the declared write set
+     */
+    public SortedSet<Integer> getDeclaredWrites() {
+        return declaredWrites;
+    }
+
+    /**
+     * Getting all the variables the operation accesses, for a scan these include the ids in the range that no site holds
+     * @return the variable ids in ascending order
+     */
+    public List<Integer> getVariableIds() {
+        List<Integer> variableIds = new ArrayList<>();
+        if (type == OperationType.MULTI_WRITE) {
+            variableIds.addAll(writes.keySet());
+        } else if (type == OperationType.SCAN) {
+            for (int id = variableId; id <= lastVariableId; id++) {
+                variableIds.add(id);
+            }
+        } else {
+            variableIds.add(variableId);
+        }
+        return variableIds;
+    }
+
+    /**
+     * Check whether the operation reads or writes a variable
+     * @param variableId the variable
+     * @return true if the operation accesses the variable
+     */
+    public boolean covers(int variableId) {
+        if (type == OperationType.SCAN) {
+            return variableId >= this.variableId && variableId <= lastVariableId;
+        }
+        if (type == OperationType.MULTI_WRITE) {
+            return writes.containsKey(variableId);
+        }
+        if (type == OperationType.READ || type == OperationType.WRITE) {
+            return variableId == this.variableId;
+        }
+        return false;
+    }
+
+    /**
+     * Getting the lock the operation needs on the variables it accesses
+     * @return write for writes and multi-writes, read otherwise
+     */
+    public LockType getLockType() {
+        return type == OperationType.WRITE || type == OperationType.MULTI_WRITE ? LockType.WRITE : LockType.READ;
+    }
+
     /**
      * Getting the time the operation arrived 
      * @return the time the operation arrived 
@@ -1,7 +1,7 @@
 package src.main.java;
 
 public enum OperationType {
-    BEGIN, BEGIN_READ_ONLY, COMMIT, READ, WRITE
+    BEGIN, BEGIN_READ_ONLY, COMMIT, READ, WRITE, SCAN, MULTI_WRITE
 }
 
 
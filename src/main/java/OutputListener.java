@@ -0,0 +1,21 @@
+package src.main.java;
+
+/**
+ * receives every line the output printer produces, as soon as it is produced
+ */
+public interface OutputListener {
+
+    /**
+     * Called for each output line
+     * @param transactionId the transaction the line is about, 0 if it is not about a transaction (e.g. dump)
+     * @param line the line, without the line break
+     */
+    void onOutput(int transactionId, String line);
+
+    /**
+     * Called after the commit or abort line of a transaction, no more results of the transaction follow
+     * @param transactionId the transaction that committed or aborted
+     */
+    default void onTransactionEnd(int transactionId) {
+    }
+}
@@ -1,11 +1,16 @@
 package src.main.java;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
 
 public class OutputPrinter {
 
     private boolean verbose;
+    private boolean buffering = true;
+    private OutputListener listener;
     StringBuffer buffer = new StringBuffer();
 
     /**
@@ -16,6 +21,36 @@ public class OutputPrinter {
         this.verbose = verbose;
     }
 
+    /**
+     * Set whether output lines are kept in the buffer, turned off by embedders that only listen to the output
+     * @param buffering true to keep the lines in the buffer
+     */
+    public void setBuffering(boolean buffering) {
+        this.buffering = buffering;
+    }
+
+    /**
+     * Set the listener that receives every output line as it is produced
+     * @param listener the listener, null to remove it
+     */
+    public void setListener(OutputListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Helper method for emitting a line to the buffer and the listener
+     * @param transactionId the transaction the line is about, 0 if none
+     * @param line the line without the line break
+     */
+    private void emit(int transactionId, String line) {
+        if (buffering) {
+            buffer.append(line).append('\n');
+        }
+        if (listener != null) {
+            listener.onOutput(transactionId, line);
+        }
+    }
+
     /**
      * Prints the output 
      */
@@ -23,27 +58,73 @@ public class OutputPrinter {
         System.out.println(buffer.toString());
     }
 
+    /**
+     * Get everything written to the buffer so far
+     * @return the output
+     */
+    public String getOutput() {
+        return buffer.toString();
+    }
+
     /**
      * Prints out all the data copies values in each site 
      * @param siteId
-     * @param dataCopies
+     * @param values <key : variable id, value : latest committed value> of every copy held by the site
      * sample output: site 1 – x2: 6, x3: 2, ... x20: 3
      */
-    public void dumpSite(int siteId, Map<Integer, DataCopy> dataCopies) {
-        buffer.append("site " + siteId);
+    public void dumpSite(int siteId, Map<Integer, Integer> values) {
+        StringBuilder line = new StringBuilder("site " + siteId);
         boolean firstEntry = true;
-        for (int i = 1; i <= 20; i++) {
-            if (dataCopies.containsKey(i)) {
-                if (firstEntry) {
-                    buffer.append(" – ");
-                    firstEntry = false;
-                } else {
-                    buffer.append(", ");
-                }
-                buffer.append("x" + i + ": " + dataCopies.get(i).getLatestCommitValue());
+        for (int i : new TreeSet<>(values.keySet())) {
+            if (firstEntry) {
+                line.append(" – ");
+                firstEntry = false;
+            } else {
+                line.append(", ");
             }
+            line.append("x" + i + ": " + values.get(i));
         }
-        buffer.append('\n');
+        emit(0, line.toString());
+    }
+
+    /**
+     * Prints out that a variable moved to other sites, only in verbose mode
+     * @param variableId the variable
+     * @param oldSites the sites that held the variable
+     * @param newSites the sites that hold the variable now
+     * sample output: x3 moved from sites 4 to sites 5, 6
+     */
+    public void printMove(int variableId, List<Integer> oldSites, List<Integer> newSites) {
+        if (verbose) {
+            emit(0, "x" + variableId + " moved from sites " + join(oldSites) + " to sites " + join(newSites));
+        }
+    }
+
+    /**
+     * Print a change of replication chosen from the access rates, only in verbose mode
+     * @param decision the decision
+     */
+    public void printReplicationDecision(ReplicationDecision decision) {
+        if (verbose) {
+            emit(0, String.format("x%d replicas %d -> %d (%.1f reads, %.1f writes per window)", decision.getVariableId(),
+                    decision.getOldSites().size(), decision.getNewSites().size(), decision.getReadRate(), decision.getWriteRate()));
+        }
+    }
+
+    /**
+     * Helper method for joining ids with commas
+     * @param ids the ids
+     * @return the ids separated by ", "
+     */
+    private String join(List<Integer> ids) {
+        StringBuilder joined = new StringBuilder();
+        for (int id : ids) {
+            if (joined.length() > 0) {
+                joined.append(", ");
+            }
+            joined.append(id);
+        }
+        return joined.toString();
     }
 
     /**
@@ -53,11 +134,31 @@ public class OutputPrinter {
      * @param transactionId which transaction read the variable 
      */
     public void printReadSuccess(int variableId, int value, int transactionId) {
-        buffer.append("x" + variableId + ": " + value);
         if (verbose) {
-            buffer.append(" read by T" + transactionId);
+            emit(transactionId, "x" + variableId + ": " + value + " read by T" + transactionId);
+        } else {
+            emit(transactionId, "x" + variableId + ": " + value);
         }
-        buffer.append('\n');
+    }
+
+    /**
+     * Prints out all the variables read by a scan on one line
+     * @param values <key : variable id, value : value read>, in variable order
+     * @param transactionId which transaction scanned the variables
+     * sample output: x1: 10, x2: 20, x3: 30
+     */
+    public void printScanSuccess(SortedMap<Integer, Integer> values, int transactionId) {
+        StringBuilder line = new StringBuilder();
+        for (int variableId : values.keySet()) {
+            if (line.length() > 0) {
+                line.append(", ");
+            }
+            line.append("x" + variableId + ": " + values.get(variableId));
+        }
+        if (verbose) {
+            line.append(" scanned by T" + transactionId);
+        }
+        emit(transactionId, line.toString());
     }
 
     /**
@@ -68,7 +169,7 @@ public class OutputPrinter {
      */
     public void printWriteSuccess(int variableId, int value, int transactionId) {
         if (verbose) {
-            buffer.append(value + " written to x" + variableId + " by T" + transactionId + '\n');
+            emit(transactionId, value + " written to x" + variableId + " by T" + transactionId);
         }
     }
 
@@ -77,7 +178,10 @@ public class OutputPrinter {
      * @param transactionId the transaction that has been successfully commited 
      */
     public void printCommitSuccess(int transactionId) {
-        buffer.append("T" + transactionId + " commit\n");
+        emit(transactionId, "T" + transactionId + " commit");
+        if (listener != null) {
+            listener.onTransactionEnd(transactionId);
+        }
     }
 
     /**
@@ -85,7 +189,10 @@ public class OutputPrinter {
      * @param transactionId the transaction that has been aborted 
      */
     public void printAbortSuccess(int transactionId) {
-        buffer.append("T" + transactionId + " abort\n");
+        emit(transactionId, "T" + transactionId + " abort");
+        if (listener != null) {
+            listener.onTransactionEnd(transactionId);
+        }
     }
 
     /**
@@ -94,7 +201,7 @@ public class OutputPrinter {
      */
     public void printDeadlock(int transactionId) {
         if (verbose) {
-            buffer.append("Choose the youngest transaction T" + transactionId + " to abort\n");
+            emit(transactionId, "Choose the youngest transaction T" + transactionId + " to abort");
         }
     }
 
@@ -104,10 +211,10 @@ public class OutputPrinter {
      */
     public void printWaitsForGraph(Map<Integer, Set<Integer>> waitsForGraph) {
         if (verbose) {
-            buffer.append("waits for graph:\n");
+            emit(0, "waits for graph:");
             for (int sourceNode : waitsForGraph.keySet()) {
                 for (int destNode : waitsForGraph.get(sourceNode)) {
-                    buffer.append("T" + sourceNode + " -> T" + destNode + '\n');
+                    emit(0, "T" + sourceNode + " -> T" + destNode);
                 }
             }
         }
@@ -119,11 +226,11 @@ public class OutputPrinter {
      */
     public void printCycle(Set<Integer> cycle) {
         if (verbose && !cycle.isEmpty()) {
-            buffer.append("cycle detected:");
+            StringBuilder line = new StringBuilder("cycle detected:");
             for (int node : cycle) {
-                buffer.append(" T" + node);
+                line.append(" T" + node);
             }
-            buffer.append('\n');
+            emit(0, line.toString());
         }
     }
 }
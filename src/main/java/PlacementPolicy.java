@@ -0,0 +1,90 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * decides which sites hold a copy of each variable
+ * A variable with more than one copy is replicated, and follows the available copies rules for reads after a recovery.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Choose the sites that hold a variable
+     * @param variableId the variable id, from 1 to variableCount
+     * @param variableCount the number of variables
+     * @param siteIds all the site ids in ascending order
+     * @return the site ids holding the variable, the order is the order in which copies are tried for reads
+     */
+    List<Integer> getSites(int variableId, int variableCount, List<Integer> siteIds);
+
+    /**
+     * Getter of the policy name
+     * @return the name used on the command line
+     */
+    String getName();
+
+    /**
+     * Build the data distribution information of every variable
+     * @param policy the placement policy
+     * @param variableCount the number of variables
+     * @param siteIds all the site ids in ascending order
+     * @return <key : variableId, value : data distribution information>
+     */
+    static Map<Integer, DataInfo> buildDataLocation(PlacementPolicy policy, int variableCount, List<Integer> siteIds) {
+        Map<Integer, DataInfo> dataLocation = new HashMap<>();
+        for (int variableId = 1; variableId <= variableCount; variableId++) {
+            dataLocation.put(variableId, policy.getDataInfo(variableId, variableCount, siteIds));
+        }
+        return dataLocation;
+    }
+
+    /**
+     * Build the data distribution information of one variable
+     * @param variableId the variable id
+     * @param variableCount the number of variables
+     * @param siteIds all the site ids in ascending order
+     * @return the data distribution information
+     */
+    default DataInfo getDataInfo(int variableId, int variableCount, List<Integer> siteIds) {
+        List<Integer> availableSites = new ArrayList<>(getSites(variableId, variableCount, siteIds));
+        DataType type = availableSites.size() > 1 ? DataType.REPLICATED : DataType.NOT_REPLICATED;
+        return new DataInfo(variableId, type, availableSites);
+    }
+
+    /**
+     * Create a policy from its command line name
+     * @param name default, modulo[:replicas], range[:replicas] or hash[:replicas[:virtual nodes per site]]
+     * @return the policy
+     */
+    static PlacementPolicy fromName(String name) {
+        String[] parts = name.split(":");
+        int replicationFactor = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+        switch (parts[0]) {
+            case "default":
+                return new DefaultPlacement();
+            case "modulo":
+                return new ModuloPlacement(replicationFactor);
+            case "range":
+                return new RangePlacement(replicationFactor);
+            case "hash":
+                return new ConsistentHashPlacement(parts.length > 1 ? replicationFactor : 3, parts.length > 2 ? Integer.parseInt(parts[2]) : 64);
+            default:
+                throw new IllegalArgumentException("unknown placement policy " + name);
+        }
+    }
+
+    /**
+     * Helper method for the policies that place the replicas of a variable on consecutive sites
+     * @param first the index of the first site in siteIds
+     * @param replicationFactor the number of copies, capped by the number of sites
+     * @param siteIds all the site ids in ascending order
+     * @return the site ids
+     */
+    static List<Integer> consecutiveSites(int first, int replicationFactor, List<Integer> siteIds) {
+        List<Integer> sites = new ArrayList<>();
+        for (int i = 0; i < Math.min(replicationFactor, siteIds.size()); i++) {
+            sites.add(siteIds.get((first + i) % siteIds.size()));
+        }
+        return sites;
+    }
+}
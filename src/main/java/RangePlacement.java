@@ -0,0 +1,29 @@
+package src.main.java;
+
+import java.util.List;
+
+/**
+ * range partitioning: the variables are split into as many contiguous ranges as there are sites, so that a scan touches few sites,
+ * and the replicas of a range go to the next sites
+ */
+public class RangePlacement implements PlacementPolicy {
+    private final int replicationFactor;
+
+    /**
+     * @param replicationFactor the number of copies of every variable
+     */
+    public RangePlacement(int replicationFactor) {
+        this.replicationFactor = replicationFactor;
+    }
+
+    @Override
+    public List<Integer> getSites(int variableId, int variableCount, List<Integer> siteIds) {
+        int first = (int) ((long) (variableId - 1) * siteIds.size() / variableCount);
+        return PlacementPolicy.consecutiveSites(first, replicationFactor, siteIds);
+    }
+
+    @Override
+    public String getName() {
+        return "range:" + replicationFactor;
+    }
+}
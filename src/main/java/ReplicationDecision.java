@@ -0,0 +1,89 @@
+package src.main.java;
+
+import java.util.List;
+
+/**
+ * records one change of the replication of a variable made by the adaptive replication, and the access rates behind it
+ */
+public final class ReplicationDecision {
+    private final int time;
+    private final int variableId;
+    private final List<Integer> oldSites;
+    private final List<Integer> newSites;
+    private final double readRate;   // reads per window when the decision was made
+    private final double writeRate;  // writes per window when the decision was made
+
+    /**
+     * Constructor initializing all the information of the decision
+     * @param time the tick the decision was made
+     * @param variableId the variable
+     * @param oldSites the sites holding the variable before
+     * @param newSites the sites that will hold the variable
+     * @param readRate reads per window
+     * @param writeRate writes per window
+     */
+    public ReplicationDecision(int time, int variableId, List<Integer> oldSites, List<Integer> newSites, double readRate, double writeRate) {
+        this.time = time;
+        this.variableId = variableId;
+        this.oldSites = oldSites;
+        this.newSites = newSites;
+        this.readRate = readRate;
+        this.writeRate = writeRate;
+    }
+
+    /**
+     * Getter of the decision time
+     * @return the tick the decision was made
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Getter of the variable
+     * @return the variable id
+     */
+    public int getVariableId() {
+        return variableId;
+    }
+
+    /**
+     * Getter of the sites before the decision
+     * @return the sites holding the variable before
+     */
+    public List<Integer> getOldSites() {
+        return oldSites;
+    }
+
+    /**
+     * Getter of the sites after the decision
+     * @return the sites that will hold the variable
+     */
+    public List<Integer> getNewSites() {
+        return newSites;
+    }
+
+    /**
+     * Getter of the read rate
+     * @return reads per window when the decision was made
+     */
+    public double getReadRate() {
+        return readRate;
+    }
+
+    /**
+     * Getter of the write rate
+     * @return writes per window when the decision was made
+     */
+    public double getWriteRate() {
+        return writeRate;
+    }
+
+    /**
+     * Check whether the decision adds replicas
+     * @return true if the variable gets more copies
+     */
+    public boolean isGrowing() {
+        return newSites.size() > oldSites.size();
+    }
+}
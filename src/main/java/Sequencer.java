@@ -0,0 +1,219 @@
+package src.main.java;
+
+import java.util.*;
+
+/**
+ * Deterministic scheduler for one-shot transactions, in front of the transaction manager
+ * Submitted transactions are queued in sequence order and run as a batch. Locks are granted in sequence order: a transaction
+ * runs in the first wave where it gets all its locks and no earlier transaction of the batch that it conflicts with is still
+ * waiting. The transactions of a wave do not conflict, and they run one by one in sequence order: reads, writes, then output.
+ * The same input therefore always gives the same output, and a one-shot
+ * transaction never waits on the waits-for graph. A transaction that conflicts with the locks of an interactive transaction stays
+ * queued until a later batch.
+ */
+public class Sequencer {
+    private Map<Integer, Site> sites;    // <key : siteId, value : site>
+    private TransactionManager transactionManager;
+    private OutputPrinter outputPrinter;
+    private List<OneShotTransaction> queue;  // the transactions waiting to run, in sequence order
+
+    /**
+     * Initialize the sequencer
+     * @param sites <key : siteId, value : site>
+     * @param transactionManager the transaction manager, which knows where the variables are
+     * @param outputPrinter the output printer
+     */
+    public Sequencer(Map<Integer, Site> sites, TransactionManager transactionManager, OutputPrinter outputPrinter) {
+        this.sites = sites;
+        this.transactionManager = transactionManager;
+        this.outputPrinter = outputPrinter;
+        this.queue = new ArrayList<>();
+    }
+
+    /**
+     * Append a transaction to the sequence, it runs at the next flush
+     * side effect: will change queue
+     * @param transaction the one-shot transaction
+     */
+    public void submit(OneShotTransaction transaction) {
+        queue.add(transaction);
+    }
+
+    /**
+     * Check whether any transaction is waiting to run
+     * @return true if the queue is not empty
+     */
+    public boolean hasQueued() {
+        return !queue.isEmpty();
+    }
+
+    /**
+     * Remove a queued transaction that has not run yet
+     * side effect: will change queue
+     * @param transactionId the transaction id
+     */
+    public void cancel(int transactionId) {
+        queue.removeIf(transaction -> transaction.getTransactionId() == transactionId);
+    }
+
+    /**
+     * Run the queued transactions wave by wave, the ones that can not get their locks stay queued
+     * side effect: will change the lock tables, the data managers and queue
+     * @param currentTime the current time, used as the commit time
+     */
+    public void flush(int currentTime) {
+        List<OneShotTransaction> remaining = new ArrayList<>(queue);
+        queue.clear();
+
+        while (!remaining.isEmpty()) {
+            List<OneShotTransaction> wave = new ArrayList<>();
+            List<OneShotTransaction> waiting = new ArrayList<>();
+            // the variables accessed by the waiting transactions, a transaction can not overtake an earlier one it conflicts with
+            Set<Integer> waitingReads = new HashSet<>();
+            Set<Integer> waitingWrites = new HashSet<>();
+            for (OneShotTransaction transaction : remaining) {
+                boolean overtakes = false;
+                for (Operation operation : transaction.getOperations()) {
+                    int variableId = operation.getVariableId();
+                    if (waitingWrites.contains(variableId) || (operation.getType() == OperationType.WRITE && waitingReads.contains(variableId))) {
+                        overtakes = true;
+                        break;
+                    }
+                }
+                if (!overtakes && acquireLocks(transaction)) {
+                    wave.add(transaction);
+                    continue;
+                }
+                waiting.add(transaction);
+                for (Operation operation : transaction.getOperations()) {
+                    if (operation.getType() == OperationType.WRITE) {
+                        waitingWrites.add(operation.getVariableId());
+                    } else {
+                        waitingReads.add(operation.getVariableId());
+                    }
+                }
+            }
+
+            // the rest waits for interactive transactions to release their locks
+            if (wave.isEmpty()) {
+                queue.addAll(waiting);
+                return;
+            }
+
+            for (OneShotTransaction transaction : wave) {
+                transaction.readPhase(sites);
+                writePhase(transaction, currentTime);
+            }
+            remaining = waiting;
+        }
+    }
+
+    /**
+     * Take every lock of a transaction in ascending (site, variable) order, or none of them
+     * A stored read locks the first copy that can be read, a write locks every copy on the sites that are up.
+     * side effect: might change the lock tables, the read sites and locked sites of the transaction
+     * @param transaction the one-shot transaction
+     * @return true if all the locks are taken, false if a variable can not be accessed now or a lock is held by another transaction
+     */
+    private boolean acquireLocks(OneShotTransaction transaction) {
+        int transactionId = transaction.getTransactionId();
+        SortedSet<Integer> storedReads = transaction.getStoredReads();
+        SortedSet<Integer> writes = transaction.getWrites();
+        SortedSet<Integer> variables = new TreeSet<>(storedReads);
+        variables.addAll(writes);
+
+        // plan the locks, <key : site id, value : <key : variable id, value : lock type>>
+        SortedMap<Integer, SortedMap<Integer, LockType>> plannedLocks = new TreeMap<>();
+        Map<Integer, Integer> readSites = new HashMap<>();
+        for (int variableId : variables) {
+            DataInfo dataInfo = transactionManager.getDataInfo(variableId);
+            if (dataInfo == null) {
+                return false;
+            }
+            boolean write = writes.contains(variableId);
+            boolean anySiteUp = false;
+            for (int siteId : dataInfo.getAvailableSites()) {
+                Site site = sites.get(siteId);
+                if (!site.isUp()) {
+                    continue;
+                }
+                boolean readable = site.getDataManager().readAvailable(variableId);
+                if (storedReads.contains(variableId) && !readSites.containsKey(variableId) && readable) {
+                    readSites.put(variableId, siteId);
+                    plannedLocks.computeIfAbsent(siteId, id -> new TreeMap<>()).put(variableId, write ? LockType.WRITE : LockType.READ);
+                } else if (write) {
+                    plannedLocks.computeIfAbsent(siteId, id -> new TreeMap<>()).put(variableId, LockType.WRITE);
+                }
+                anySiteUp = true;
+                if (!write && readSites.containsKey(variableId)) {
+                    break;
+                }
+            }
+            if (!anySiteUp || (storedReads.contains(variableId) && !readSites.containsKey(variableId))) {
+                return false;
+            }
+        }
+
+        List<int[]> takenLocks = new ArrayList<>();     // {site id, variable id} of the locks taken so far
+        for (int siteId : plannedLocks.keySet()) {
+            LockManager lockManager = sites.get(siteId).getLockManager();
+            for (Map.Entry<Integer, LockType> lock : plannedLocks.get(siteId).entrySet()) {
+                Set<Integer> conflictingTransactions = lockManager.acquireLock(transactionId, lock.getKey(), lock.getValue());
+                conflictingTransactions.remove(transactionId);
+                if (!conflictingTransactions.isEmpty()) {
+                    // release only what this attempt took
+                    for (int[] takenLock : takenLocks) {
+                        sites.get(takenLock[0]).getLockManager().releaseLock(transactionId, takenLock[1]);
+                    }
+                    return false;
+                }
+                takenLocks.add(new int[]{siteId, lock.getKey()});
+            }
+        }
+
+        transaction.getReadSites().putAll(readSites);
+        for (int siteId : plannedLocks.keySet()) {
+            transaction.getLockedSites().put(siteId, plannedLocks.get(siteId).keySet());
+        }
+        return true;
+    }
+
+    /**
+     * Install the writes of a transaction on every locked copy, release its locks and print its output
+     * side effect: will change the data managers and the lock tables
+     * @param transaction the one-shot transaction, after its read phase
+     * @param currentTime the commit time
+     */
+    private void writePhase(OneShotTransaction transaction, int currentTime) {
+        int transactionId = transaction.getTransactionId();
+        List<Operation> operations = transaction.getOperations();
+
+        // the last value written to each variable
+        Map<Integer, Integer> writtenValues = new HashMap<>();
+        for (int i = 0; i < operations.size(); i++) {
+            Operation operation = operations.get(i);
+            if (operation.getType() == OperationType.WRITE) {
+                writtenValues.put(operation.getVariableId(), operation.getValueToWrite());
+                outputPrinter.printWriteSuccess(operation.getVariableId(), operation.getValueToWrite(), transactionId);
+            } else {
+                outputPrinter.printReadSuccess(operation.getVariableId(), transaction.getReadValue(i), transactionId);
+            }
+        }
+
+        for (int siteId : transaction.getLockedSites().keySet()) {
+            Map<Integer, Integer> siteValues = new HashMap<>();
+            for (int variableId : transaction.getLockedSites().get(siteId)) {
+                if (writtenValues.containsKey(variableId)) {
+                    siteValues.put(variableId, writtenValues.get(variableId));
+                }
+            }
+            Site site = sites.get(siteId);
+            if (!siteValues.isEmpty()) {
+                site.commitWithoutLocks(currentTime, siteValues);
+                transactionManager.receiveCommitNotice(siteId, siteValues.keySet());
+            }
+            site.getLockManager().releaseAllLocks(transactionId);
+        }
+        transactionManager.commitOneShot(transactionId, transaction.getSubmitTime());
+    }
+}
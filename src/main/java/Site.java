@@ -14,9 +14,23 @@ class Site {
      * @param outputPrinter 
      */
     public Site(int siteId, OutputPrinter outputPrinter) {
+        this(siteId, outputPrinter, new DataManager(siteId));
+    }
+
+    /**
+     * initialize a site holding the copies a placement gives it
+     * @param siteId the site being initialized
+     * @param outputPrinter
+     * @param dataLocation <key : variableId, value : data distribution information>
+     */
+    public Site(int siteId, OutputPrinter outputPrinter, Map<Integer, DataInfo> dataLocation) {
+        this(siteId, outputPrinter, new DataManager(siteId, dataLocation));
+    }
+
+    private Site(int siteId, OutputPrinter outputPrinter, DataManager dataManager) {
         this.siteId = siteId;
         this.outputPrinter = outputPrinter;
-        this.dataManager = new DataManager(siteId);
+        this.dataManager = dataManager;
         this.lockManager = new LockManager();
         this.siteStatus = siteStatus.UP;
     }
@@ -57,17 +71,29 @@ class Site {
      * Call data manager and lock manager to commit this transaction
      * side effect: will change data manager and lock manager
      * @param transactionId the transaction to commit
-     * @param updatedVariables the updated values of the variables touched by this transaction
+     * @param writeSet the values written by this transaction, <key : variable id, value : value written>
+     * @return the variables committed on this site, the ones the transaction holds a write lock on here
      */
-    public void commit(int transactionId, int time, Map<Integer, Integer> updatedVariables) {
+    public Set<Integer> commit(int transactionId, int time, IntIntMap writeSet) {
         Map<Integer, Integer> writtenValues = new HashMap<>();
-        for (int variableId : updatedVariables.keySet()) {
-            if (lockManager.isHoldingLock(LockType.WRITE, variableId, transactionId)) {
-                writtenValues.put(variableId, updatedVariables.get(variableId));
+        for (int slot = writeSet.nextSlot(-1); slot >= 0; slot = writeSet.nextSlot(slot)) {
+            if (lockManager.isHoldingLock(LockType.WRITE, writeSet.keyAt(slot), transactionId)) {
+                writtenValues.put(writeSet.keyAt(slot), writeSet.valueAt(slot));
             }
         }
         dataManager.commitVariables(time, writtenValues);
         lockManager.releaseAllLocks(transactionId);
+        return writtenValues.keySet();
+    }
+
+    /**
+     * Call data manager to install the values of a transaction that was validated without holding locks
+     * side effect: will change data manager
+     * @param time the commit time
+     * @param writtenValues the values to install, all of them hosted by this site
+     */
+    public void commitWithoutLocks(int time, Map<Integer, Integer> writtenValues) {
+        dataManager.commitVariables(time, writtenValues);
     }
 
     /**
@@ -0,0 +1,103 @@
+package src.main.java;
+
+import java.util.Arrays;
+
+/**
+ * one parsed line of a trace, before it gets a time and is executed
+ * The record is reused from line to line, so parsing and decoding allocate nothing once the argument array is large enough.
+ * What the fields hold depends on the type:
+ * - BEGIN, BEGIN_READ_ONLY, END: the transaction id
+ * - READ: the transaction id and the variable id
+ * - WRITE: the transaction id, the variable id and the value
+ * - SCAN: the transaction id, the first variable id as variableId and the last one as value
+ * - MULTI_WRITE: the transaction id, and (variable id, value) pairs as arguments
+ * - BEGIN_DECLARED: the transaction id, the number of declared reads as value, then the declared reads and writes as arguments
+ * - ONE_SHOT: the transaction id, and (0 for a read or 1 for a write, variable id, value) triples as arguments
+ * - FAIL, RECOVER, ADD_SITE: the site id as variableId
+ * - PLACEMENT: the policy name as text
+ * - UNKNOWN: the line as text, executing it stops the trace
+ */
+public class TraceCommand {
+    CommandType type;
+    int transactionId;
+    int variableId;
+    int value;
+    int[] arguments;
+    int argumentCount;
+    String text;
+
+    public TraceCommand() {
+        arguments = new int[8];
+        clear(CommandType.UNKNOWN);
+    }
+
+    /**
+     * Reset the record for a new command
+     * side effect: will change every field
+     * @param type the type of the new command
+     */
+    public void clear(CommandType type) {
+        this.type = type;
+        transactionId = 0;
+        variableId = 0;
+        value = 0;
+        argumentCount = 0;
+        text = null;
+    }
+
+    /**
+     * Append an argument
+     * side effect: will change arguments, might grow it
+     * @param argument the argument
+     */
+    public void addArgument(int argument) {
+        if (argumentCount == arguments.length) {
+            arguments = Arrays.copyOf(arguments, arguments.length * 2);
+        }
+        arguments[argumentCount++] = argument;
+    }
+
+    /**
+     * Copy another command into this record
+     * side effect: will change every field
+     * @param command the command to copy
+     */
+    public void copyFrom(TraceCommand command) {
+        clear(command.type);
+        transactionId = command.transactionId;
+        variableId = command.variableId;
+        value = command.value;
+        text = command.text;
+        for (int i = 0; i < command.argumentCount; i++) {
+            addArgument(command.arguments[i]);
+        }
+    }
+
+    public CommandType getType() {
+        return type;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public int getVariableId() {
+        return variableId;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    public int getArgument(int index) {
+        return arguments[index];
+    }
+
+    public String getText() {
+        return text;
+    }
+}
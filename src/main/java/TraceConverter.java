@@ -0,0 +1,84 @@
+package src.main.java;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts traces between the text syntax and the binary format, in the direction given by the input file
+ * Every line of a text trace is kept, a line that is not a command is stored as is, so converting back and forth
+ * gives the same commands and replaying either file gives the same output.
+ */
+public class TraceConverter {
+
+    /**
+     * Convert a text trace into a binary trace
+     * @param input the text trace
+     * @param output the binary trace
+     * @return the number of commands
+     * @throws IOException if a file can not be read or written
+     */
+    public static long toBinary(File input, File output) throws IOException {
+        TraceParser parser = new TraceParser();
+        TraceCommand command = new TraceCommand();
+        long commands = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8));
+             BinaryTraceWriter writer = new BinaryTraceWriter(output)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    parser.parse(line, command);
+                } catch (RuntimeException e) {
+                    // a line lacking a number is kept as text, replaying stops there
+                    command.clear(CommandType.UNKNOWN);
+                    command.text = line;
+                }
+                writer.write(command);
+                commands++;
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Convert a binary trace into a text trace, one line per command
+     * @param input the binary trace
+     * @param output the text trace
+     * @return the number of commands
+     * @throws IOException if a file can not be read or written, or the binary trace is corrupted
+     */
+    public static long toText(File input, File output) throws IOException {
+        TraceCommand command = new TraceCommand();
+        long commands = 0;
+        try (BinaryTraceReader reader = new BinaryTraceReader(input);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+            while (reader.next(command)) {
+                writer.write(TraceParser.format(command));
+                writer.newLine();
+                commands++;
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Command line entry point
+     * usage: TraceConverter input output, a binary input is converted to text and a text input to binary
+     * @param args the arguments
+     * @throws IOException if a file can not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("usage: TraceConverter input output");
+            return;
+        }
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        long commands;
+        if (BinaryTraceReader.isBinary(input)) {
+            commands = toText(input, output);
+        } else {
+            commands = toBinary(input, output);
+        }
+        System.out.println(commands + " commands, " + input.length() + " bytes -> " + output.length() + " bytes");
+    }
+}
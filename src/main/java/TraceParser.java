@@ -0,0 +1,289 @@
+package src.main.java;
+
+import java.util.Arrays;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * parses the lines of a text trace into commands, and formats commands back into lines
+ * A line is recognized by the same keywords, checked in the same order, as it always was: the numbers of the line are its
+ * arguments wherever they are. Parsing does not depend on the state of the database, so a line can be parsed ahead of its tick.
+ */
+public class TraceParser {
+    private static final Pattern ONE_SHOT_PATTERN = Pattern.compile("([RW])\\(\\s*x([0-9]+)\\s*(?:,\\s*([0-9]+)\\s*)?\\)");
+    private static final Pattern PLACEMENT_PATTERN = Pattern.compile("placement\\(\\s*([^)\\s]+)\\s*\\)");
+    private static final Pattern DECLARED_SET_PATTERN = Pattern.compile("([RW])\\[([^\\]]*)\\]");
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("[0-9]+");
+
+    private int[] numbers;  // the numbers of the line being parsed
+    private int numberCount;
+
+    public TraceParser() {
+        numbers = new int[8];
+    }
+
+    /**
+     * Parse a line into a command
+     * side effect: will change the command
+     * @param line the line
+     * @param command the record to fill
+     * @throws NumberFormatException if a number does not fit in an int
+     * @throws IndexOutOfBoundsException if a command lacks a number
+     */
+    public void parse(String line, TraceCommand command) {
+        findNumbers(line);
+
+        if (line.contains("oneshot")) {
+            parseOneShot(line, command);
+        } else if (line.contains("addsite")) {
+            command.clear(CommandType.ADD_SITE);
+            command.variableId = number(0);
+        } else if (line.contains("placement")) {
+            Matcher nameMatcher = PLACEMENT_PATTERN.matcher(line);
+            if (nameMatcher.find()) {
+                command.clear(CommandType.PLACEMENT);
+                command.text = nameMatcher.group(1);
+            } else {
+                unknown(line, command);
+            }
+        } else if (line.contains("beginRO")) {
+            command.clear(CommandType.BEGIN_READ_ONLY);
+            command.transactionId = number(0);
+        } else if (line.contains("begin")) {
+            if (line.contains("[")) {
+                parseDeclaredBegin(line, command);
+            } else {
+                command.clear(CommandType.BEGIN);
+            }
+            command.transactionId = number(0);
+        } else if (line.contains("recover")) {
+            command.clear(CommandType.RECOVER);
+            command.variableId = number(0);
+        } else if (line.contains("fail")) {
+            command.clear(CommandType.FAIL);
+            command.variableId = number(0);
+        } else if (line.contains("end")) {
+            command.clear(CommandType.END);
+            command.transactionId = number(0);
+        } else if (line.contains("dump")) {
+            command.clear(CommandType.DUMP);
+        } else if (line.contains("S")) {
+            command.clear(CommandType.SCAN);
+            command.transactionId = number(0);
+            command.variableId = number(1);
+            command.value = number(2);
+        } else if (line.contains("MW")) {
+            command.clear(CommandType.MULTI_WRITE);
+            command.transactionId = number(0);
+            for (int i = 1; i + 1 < numberCount; i += 2) {
+                command.addArgument(numbers[i]);
+                command.addArgument(numbers[i + 1]);
+            }
+            if (command.argumentCount == 0) {
+                unknown(line, command);
+            }
+        } else if (line.contains("R")) {
+            command.clear(CommandType.READ);
+            command.transactionId = number(0);
+            command.variableId = number(1);
+        } else if (line.contains("W")) {
+            command.clear(CommandType.WRITE);
+            command.transactionId = number(0);
+            command.variableId = number(1);
+            command.value = number(2);
+        } else {
+            unknown(line, command);
+        }
+    }
+
+    /**
+     * Format a command as a line of a text trace
+     * @param command the command
+     * @return the line, which parses back into the same command
+     */
+    public static String format(TraceCommand command) {
+        StringBuilder line = new StringBuilder();
+        switch (command.type) {
+            case BEGIN:
+                return "begin(T" + command.transactionId + ")";
+            case BEGIN_READ_ONLY:
+                return "beginRO(T" + command.transactionId + ")";
+            case BEGIN_DECLARED:
+                line.append("begin(T").append(command.transactionId);
+                if (command.value > 0 || command.argumentCount == 0) {
+                    appendSet(line, 'R', command, 0, command.value);
+                }
+                if (command.argumentCount > command.value) {
+                    appendSet(line, 'W', command, command.value, command.argumentCount);
+                }
+                return line.append(')').toString();
+            case READ:
+                return "R(T" + command.transactionId + ",x" + command.variableId + ")";
+            case WRITE:
+                return "W(T" + command.transactionId + ",x" + command.variableId + "," + command.value + ")";
+            case SCAN:
+                return "S(T" + command.transactionId + ",x" + command.variableId + ",x" + command.value + ")";
+            case MULTI_WRITE:
+                line.append("MW(T").append(command.transactionId);
+                for (int i = 0; i < command.argumentCount; i += 2) {
+                    line.append(",x").append(command.arguments[i]).append(',').append(command.arguments[i + 1]);
+                }
+                return line.append(')').toString();
+            case END:
+                return "end(T" + command.transactionId + ")";
+            case FAIL:
+                return "fail(" + command.variableId + ")";
+            case RECOVER:
+                return "recover(" + command.variableId + ")";
+            case DUMP:
+                return "dump()";
+            case ADD_SITE:
+                return "addsite(" + command.variableId + ")";
+            case PLACEMENT:
+                return "placement(" + command.text + ")";
+            case ONE_SHOT:
+                line.append("oneshot(T").append(command.transactionId);
+                for (int i = 0; i < command.argumentCount; i += 3) {
+                    if (command.arguments[i] == 0) {
+                        line.append(",R(x").append(command.arguments[i + 1]).append(')');
+                    } else {
+                        line.append(",W(x").append(command.arguments[i + 1]).append(',').append(command.arguments[i + 2]).append(')');
+                    }
+                }
+                return line.append(')').toString();
+            default:
+                return command.text;
+        }
+    }
+
+    /**
+     * Helper method for parsing a one-shot transaction, e.g. oneshot(T5,R(x1),W(x2,20)), a write without value makes it unknown
+     * side effect: will change the command
+     * @param line the line
+     * @param command the record to fill
+     */
+    private void parseOneShot(String line, TraceCommand command) {
+        command.clear(CommandType.ONE_SHOT);
+        command.transactionId = number(0);
+        Matcher matcher = ONE_SHOT_PATTERN.matcher(line);
+        while (matcher.find()) {
+            if (matcher.group(1).equals("W") && matcher.group(3) == null) {
+                unknown(line, command);
+                return;
+            }
+            command.addArgument(matcher.group(1).equals("R") ? 0 : 1);
+            command.addArgument(Integer.parseInt(matcher.group(2)));
+            command.addArgument(matcher.group(3) == null ? 0 : Integer.parseInt(matcher.group(3)));
+        }
+    }
+
+    /**
+     * Helper method for parsing a begin that declares its access set, e.g. begin(T1,R[x1,x3],W[x2])
+     * side effect: will change the command
+     * @param line the line
+     * @param command the record to fill
+     */
+    private void parseDeclaredBegin(String line, TraceCommand command) {
+        SortedSet<Integer> declaredReads = new TreeSet<>();
+        SortedSet<Integer> declaredWrites = new TreeSet<>();
+        Matcher setMatcher = DECLARED_SET_PATTERN.matcher(line);
+        while (setMatcher.find()) {
+            Matcher variableMatcher = NUMBER_PATTERN.matcher(setMatcher.group(2));
+            while (variableMatcher.find()) {
+                int variableId = Integer.parseInt(variableMatcher.group());
+                if (setMatcher.group(1).equals("R")) {
+                    declaredReads.add(variableId);
+                } else {
+                    declaredWrites.add(variableId);
+                }
+            }
+        }
+        command.clear(CommandType.BEGIN_DECLARED);
+        command.value = declaredReads.size();
+        for (int variableId : declaredReads) {
+            command.addArgument(variableId);
+        }
+        for (int variableId : declaredWrites) {
+            command.addArgument(variableId);
+        }
+    }
+
+    /**
+     * Helper method for appending a declared set, e.g. ,R[x1,x3]
+     * @param line the line being formatted
+     * @param kind R or W
+     * @param command the declared begin
+     * @param from the first argument of the set
+     * @param to the end of the set, exclusive
+     */
+    private static void appendSet(StringBuilder line, char kind, TraceCommand command, int from, int to) {
+        line.append(',').append(kind).append('[');
+        for (int i = from; i < to; i++) {
+            line.append(i == from ? "x" : ",x").append(command.arguments[i]);
+        }
+        line.append(']');
+    }
+
+    /**
+     * Helper method for a line that is not a command
+     * side effect: will change the command
+     * @param line the line
+     * @param command the record to fill
+     */
+    private static void unknown(String line, TraceCommand command) {
+        command.clear(CommandType.UNKNOWN);
+        command.text = line;
+    }
+
+    /**
+     * Helper method for collecting the numbers of a line, every run of digits in order
+     * side effect: will change numbers and numberCount
+     * @param line the line
+     * @throws NumberFormatException if a number does not fit in an int
+     */
+    private void findNumbers(String line) {
+        numberCount = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            if (!isDigit(line.charAt(i))) {
+                continue;
+            }
+            int start = i;
+            long number = 0;
+            while (i < length && isDigit(line.charAt(i))) {
+                number = number * 10 + line.charAt(i++) - '0';
+                if (number > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("For input string: \"" + line.substring(start) + "\"");
+                }
+            }
+            if (numberCount == numbers.length) {
+                numbers = Arrays.copyOf(numbers, numbers.length * 2);
+            }
+            numbers[numberCount++] = (int) number;
+        }
+    }
+
+    /**
+     * Helper method for checking an ASCII digit, the only digits the numbers of a line are made of
+     * @param c the character
+     * @return true if it is 0 to 9
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Helper method for getting a number of the line
+     * @param index the position of the number among the numbers of the line
+     * @return the number
+     * @throws IndexOutOfBoundsException if the line has fewer numbers
+     */
+    private int number(int index) {
+        if (index >= numberCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + numberCount);
+        }
+        return numbers[index];
+    }
+}
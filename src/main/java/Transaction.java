@@ -1,27 +1,53 @@
 package src.main.java;
 
-import java.util.*;
 /**
  * records all the information that the transaction manager needs to know about a transaction
+ * The state is kept in int maps and a site bitmap, so reading, writing and checking locks box nothing, and the written variables
+ * are kept apart so that commit only visits them.
  */
 public class Transaction{
     public int id;
     public int beginTime;
     private TransactionType type;
     public TransactionStatus status;
-    private Map<Integer, Integer> accessedSites; // <key : accessed site id, value : firstAccessedTime>
-    private Map<Integer, LockType> holdingLocks;    // <key : variable id, value : the lock level held on this variable (Read / Write)>
-    private Map<Integer, Integer> localCache;   // <key : variable id, value : current value>
+    private long accessedSites; // the accessed sites, site i is bit i - 1
+    private int[] firstAccessTimes; // <index : site id - 1, value : firstAccessedTime>
+    private IntIntMap holdingLocks;    // <key : variable id, value : the ordinal of the lock level held on this variable (Read / Write)>
+    private IntIntMap localCache;   // <key : variable id, value : current value>
+    private IntIntMap writeSet;  // <key : variable id, value : value written>, the cached variables under a write lock, or written without locks
+    private ConcurrencyMode concurrencyMode;
+    private IntIntMap readSites;    // <key : variable id, value : the site of the version read>, only kept without locks
+    private IntIntMap readCommitTimes;  // <key : variable id, value : the commit time of the version read>, only kept without locks
 
 
     public Transaction(int id, int beginTime, TransactionType type) {
+        this(id, beginTime, type, ConcurrencyMode.LOCKING);
+    }
+
+    public Transaction(int id, int beginTime, TransactionType type, ConcurrencyMode concurrencyMode) {
         this.id = id;
         this.beginTime = beginTime;
         this.type = type;
         this.status = TransactionStatus.ACTIVE;
-        this.accessedSites = new HashMap<>();
-        this.holdingLocks = new HashMap<>();
-        this.localCache = new HashMap<>();
+        this.firstAccessTimes = new int[AvailabilityIndex.MAX_SITES];
+        this.holdingLocks = new IntIntMap(8);
+        this.localCache = new IntIntMap(8);
+        this.writeSet = new IntIntMap(4);
+        this.concurrencyMode = concurrencyMode;
+        this.readSites = new IntIntMap(4);
+        this.readCommitTimes = new IntIntMap(4);
+    }
+
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    /**
+     * checking if the transaction reads and writes without taking locks
+     * @return true if the transaction is not under locking
+     */
+    public boolean isLockFree() {
+        return concurrencyMode != ConcurrencyMode.LOCKING;
     }
 
     public TransactionType getType() {
@@ -40,16 +66,47 @@ public class Transaction{
      */
 
     public void addAccessedSite(int firstAccessTime, int siteId) {
-        if (accessedSites.containsKey(siteId)) {
+        if (hasAccessed(siteId)) {
             return;
         }
-        accessedSites.put(siteId, firstAccessTime);
+        accessedSites |= AvailabilityIndex.bit(siteId);
+        firstAccessTimes[siteId - 1] = firstAccessTime;
+    }
+
+    /**
+     * checking if a site was accessed
+     * @param siteId the site id
+     * @return true if the transaction accessed the site
+     */
+    public boolean hasAccessed(int siteId) {
+        return (accessedSites & AvailabilityIndex.bit(siteId)) != 0;
     }
 
-    public Map<Integer, Integer> getAccessedSites() {
+    /**
+     * Getting the accessed sites, visited with Long.numberOfTrailingZeros(mask) + 1
+     * @return the mask of the accessed sites, site i is bit i - 1
+     */
+    public long getAccessedSites() {
         return accessedSites;
     }
 
+    /**
+     * Getting the number of accessed sites
+     * @return the number of sites accessed
+     */
+    public int getAccessedSiteCount() {
+        return Long.bitCount(accessedSites);
+    }
+
+    /**
+     * Getting the time a site was first accessed
+     * @param siteId an accessed site
+     * @return the first access time
+     */
+    public int getFirstAccessTime(int siteId) {
+        return firstAccessTimes[siteId - 1];
+    }
+
     /**
      * check if the current transaction is holding a required lock, or a higher rank lock
      * @param lockType the type of lock that we want to check if the transaction is holding
@@ -58,11 +115,12 @@ public class Transaction{
      * @return true if the current transaction is holding a required lock, or a higher rank lock
      */
     public boolean isHoldingLock(LockType lockType, int variableId) {
-        if (!holdingLocks.containsKey(variableId)) {
+        int heldLock = holdingLocks.get(variableId, -1);
+        if (heldLock < 0) {
                 return false;
         }
     
-        if (lockType == holdingLocks.get(variableId))
+        if (lockType.ordinal() == heldLock)
         {
             return true; 
         }
@@ -90,7 +148,11 @@ public class Transaction{
         if (isHoldingLock(lockType, variableId)) {
             return;
         }
-        holdingLocks.put(variableId, lockType);
+        holdingLocks.put(variableId, lockType.ordinal());
+        // a cached value under a write lock is committed
+        if (lockType == LockType.WRITE && localCache.containsKey(variableId)) {
+            writeSet.put(variableId, localCache.get(variableId, 0));
+        }
     }
 
     /**
@@ -99,16 +161,16 @@ public class Transaction{
      * @return the current value of the variable 
      */
     public int read(int variableId) {
-        return localCache.get(variableId);
+        return localCache.get(variableId, 0);
     }
 
     /**
-     * Writing the current value of the variable 
-     * @param variableId the variable we want to update the value of 
-     * @param value the updated value of the variable 
+     * checking if a variable is in the local cache
+     * @param variableId the variable
+     * @return true if the transaction read or wrote the variable
      */
-    public void write(int variableId, int value) {
-        localCache.put(variableId, value);
+    public boolean hasCached(int variableId) {
+        return localCache.containsKey(variableId);
     }
 
     /**
@@ -134,13 +196,55 @@ public class Transaction{
      */
     public void cache(int variableId, int value) {
         localCache.put(variableId, value);
+        if (isHoldingLock(LockType.WRITE, variableId)) {
+            writeSet.put(variableId, value);
+        }
+    }
+
+    /**
+     * Remembers which version of a variable was read, so that the read can be validated at commit
+     * @param variableId the variable read
+     * @param siteId the site it was read from
+     * @param commitTime the commit time of the version read
+     */
+    public void recordRead(int variableId, int siteId, int commitTime) {
+        if (!readSites.containsKey(variableId)) {
+            readSites.put(variableId, siteId);
+            readCommitTimes.put(variableId, commitTime);
+        }
+    }
+
+    /**
+     * Getting the sites the versions were read from, without locks
+     * @return <key : variable id, value : the site of the version read>
+     */
+    public IntIntMap getReadSites() {
+        return readSites;
+    }
+
+    /**
+     * Getting the commit times of the versions read without locks
+     * @return <key : variable id, value : the commit time of the version read>
+     */
+    public IntIntMap getReadCommitTimes() {
+        return readCommitTimes;
+    }
+
+    /**
+     * Buffers a write made without locks in the local cache and the write set
+     * @param variableId the variable written
+     * @param value the value written
+     */
+    public void bufferWrite(int variableId, int value) {
+        localCache.put(variableId, value);
+        writeSet.put(variableId, value);
     }
 
     /**
-     * Getter of the localCache 
-     * @return the localCache of this transaction 
+     * Getting the written variables, the only ones a commit installs
+     * @return <key : variable id, value : value written>
      */
-    public Map<Integer, Integer> getLocalCache() {
-        return localCache;
+    public IntIntMap getWriteSet() {
+        return writeSet;
     }
 }
\ No newline at end of file
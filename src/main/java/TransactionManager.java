@@ -13,6 +13,22 @@ public class TransactionManager {
     private List<Operation> pendingList;
     private Map<Integer, Set<Integer>> waitsForGraph;
     private Map<Integer, List<Integer>> failureHistory;
+    private DeadlockPolicy deadlockPolicy;
+    private ConcurrencyMode concurrencyMode;    // the mode new read-write transactions run under
+    private Set<Integer> victims;   // transactions chosen by the deadlock policy while an operation was running, aborted once it finishes
+    private int commitCount;
+    private int abortCount;
+    private int victimCount;    // the aborts decided by the deadlock policy
+    private Map<Integer, Set<Integer>> activeTransactionsBySite;    // <key : site id, value : the unfinished transactions that accessed the site>
+    private Set<Integer> unfinishedTransactions;    // the read-write transactions that began and did not commit or abort yet
+    private boolean proactiveAbort;  // whether a site failure dooms the transactions that accessed the site at once instead of at their end
+    private Map<Integer, int[]> doomedTransactions; // <key : transaction id, value : {time it was doomed, number of transactions that were waiting for it}>
+    private int doomedCount;
+    private long earlyReleaseTicks;  // the ticks between doom and end, summed over the doomed transactions
+    private long waitingTicksSaved;  // the same ticks, counted once for every transaction that was waiting for a doomed one
+    private SortedMap<Integer, DataInfo> pendingMoves;  // <key : variableId, value : the placement it moves to once it is not in use>
+    private AdaptiveReplication adaptiveReplication;    // null unless the replication follows the access rates
+    private AvailabilityIndex availabilityIndex;    // the sites up and the readable copies of every variable, as bitsets
 
     /**
      * Execute a general read operation
@@ -27,7 +43,7 @@ public class TransactionManager {
         Transaction transaction = transactions.get(transactionId);
 
         // if the local cache has this variable, read is successful
-        if (transaction.getLocalCache().containsKey(variableId)) {
+        if (transaction.hasCached(variableId)) {
             int value = transaction.read(variableId);
             transaction.setStatus(TransactionStatus.ACTIVE);
             outputPrinter.printReadSuccess(variableId, value, transactionId);
@@ -35,12 +51,47 @@ public class TransactionManager {
         }
 
         // otherwise, try to read from sites
-        if (transaction.isReadOnly()) {
+        if (transaction.isReadOnly() || transaction.getConcurrencyMode() == ConcurrencyMode.SNAPSHOT_ISOLATION) {
             return read_RO(operation);
         }
+        if (transaction.getConcurrencyMode() == ConcurrencyMode.OPTIMISTIC) {
+            return read_OCC(operation, currentTime);
+        }
         return read_RW(operation, currentTime);
     }
 
+    /**
+     * Read the latest committed version of an available copy without taking a lock, for optimistic transactions
+     * side effect: will change the local cache, read versions and accessed sites of the transaction
+     * @param operation the read operation
+     * @param currentTime current time
+     * @return true if the read is successful, false if no copy is available
+     */
+    public boolean read_OCC(Operation operation, int currentTime) {
+        int transactionId = operation.getTransactionId();
+        int variableId = operation.getVariableId();
+        Transaction transaction = transactions.get(transactionId);
+
+        // the first site of the placement that is up and holds a readable copy
+        int siteId = availabilityIndex.choose(variableId, availabilityIndex.getReadableSites(variableId));
+
+        // if read failed due to all sites unavailable
+        if (siteId < 0) {
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
+
+        // remember the version, it is validated at commit
+        DataManager dataManager = sites.get(siteId).getDataManager();
+        int value = dataManager.read(variableId);
+        transaction.recordRead(variableId, siteId, dataManager.getLatestCommitTime(variableId));
+        transaction.cache(variableId, value);
+        addAccessedSite(transaction, currentTime, siteId);
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        outputPrinter.printReadSuccess(variableId, value, transactionId);
+        return true;
+    }
+
     /**
      * Attempt to read an available copy for read-write transaction
      * side effect: will change the local cache and info of transactions, the lock table, and waitsForGraph
@@ -56,52 +107,43 @@ public class TransactionManager {
         // firstly check if there is any blocking transactions in pending list to prevent starvation
         Set<Integer> blockingTransactions = getBlockingTransaction(operation);
         if (!blockingTransactions.isEmpty()) {
-            addEdgesToWaitsForGraph(transactionId, blockingTransactions);
+            addEdgesToWaitsForGraph(transactionId, blockingTransactions, currentTime);
             transaction.setStatus(TransactionStatus.BLOCKED);
             return false;
         }
 
-        // if there is no blocking transactions, try to acquire lock
-        DataInfo dataInfo = dataLocation.get(variableId);
-        List<Integer> availableSites = dataInfo.getAvailableSites();
-
-        for (int siteId : availableSites) {
-            Site site = sites.get(siteId);
-            DataManager dataManager = site.getDataManager();
-            LockManager lockManager = site.getLockManager();
-
-            // if the site is down or the copy is not available for read
-            if (!site.isUp() || !dataManager.readAvailable(variableId)) {
-                continue;
-            }
+        // if there is no blocking transactions, find the first site of the placement that is up and holds a readable copy
+        int siteId = availabilityIndex.choose(variableId, availabilityIndex.getReadableSites(variableId));
 
-            // if find an available site, try to acquire the read lock
-            Set<Integer> conflictingTransactions = lockManager.acquireLock(transactionId, variableId, LockType.READ);
+        // if read failed due to all sites unavailable
+        if (siteId < 0) {
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
 
-            // if can not acquire read lock
-            if (!conflictingTransactions.isEmpty()) {
-                addEdgesToWaitsForGraph(transactionId, conflictingTransactions);
-                transaction.setStatus(TransactionStatus.BLOCKED);
-                return false;
-            }
+        // try to acquire the read lock
+        Site site = sites.get(siteId);
+        Set<Integer> conflictingTransactions = site.getLockManager().acquireLock(transactionId, variableId, LockType.READ);
 
-            // if acquire read lock successfully, read the value into local cache
-            transaction.addLock(LockType.READ, variableId);
-            int value = dataManager.read(variableId);
-            transaction.cache(variableId, value);
-            transaction.addAccessedSite(currentTime, siteId);
-            transaction.setStatus(TransactionStatus.ACTIVE);
-            outputPrinter.printReadSuccess(variableId, value, transactionId);
-            return true;
+        // if can not acquire read lock
+        if (!conflictingTransactions.isEmpty()) {
+            addEdgesToWaitsForGraph(transactionId, conflictingTransactions, currentTime);
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
         }
 
-        // if read failed due to all sites unavailable
-        transaction.setStatus(TransactionStatus.BLOCKED);
-        return false;
+        // if acquire read lock successfully, read the value into local cache
+        transaction.addLock(LockType.READ, variableId);
+        int value = site.getDataManager().read(variableId);
+        transaction.cache(variableId, value);
+        addAccessedSite(transaction, currentTime, siteId);
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        outputPrinter.printReadSuccess(variableId, value, transactionId);
+        return true;
     }
 
     /**
-     * Attempt to read a snapshot for read-only transaction
+     * Attempt to read a snapshot for read-only transaction, and for read-write transaction under snapshot isolation
      * side effect: will change the local cache and info of transactions
      * @param operation the read operation
      * @return true if the read is successful, false if blocked
@@ -112,19 +154,11 @@ public class TransactionManager {
         Transaction transaction = transactions.get(transactionId);
         int transactionBeginTime = transaction.getBeginTime();
 
-        DataInfo dataInfo = dataLocation.get(variableId);
-        List<Integer> availableSites = dataInfo.getAvailableSites();
-
-        for (int siteId : availableSites) {
-            Site site = sites.get(siteId);
-            DataManager dataManager = site.getDataManager();
-
-            // if the site is down
-            if (!site.isUp()) {
-                continue;
-            }
-
-            Pair<Integer, Integer> snapshot = dataManager.getSnapshot(variableId, transactionBeginTime);
+        // the sites that are up, tried in the order of the placement
+        long candidates = availabilityIndex.getUpSites(variableId);
+        for (int siteId = availabilityIndex.choose(variableId, candidates); siteId > 0;
+             candidates &= ~AvailabilityIndex.bit(siteId), siteId = availabilityIndex.choose(variableId, candidates)) {
+            Pair<Integer, Integer> snapshot = sites.get(siteId).getDataManager().getSnapshot(variableId, transactionBeginTime);
             int commitTime = snapshot.getKey();
             int commitValue = snapshot.getValue();
 
@@ -145,6 +179,126 @@ public class TransactionManager {
         return false;
     }
 
+    /**
+     * Read every variable of a range and print them on one line
+     * Snapshot readers get the snapshots of a whole site in one call per site. Optimistic transactions get the latest versions
+     * the same way. Locking transactions take one range read lock per site they read from instead of a lock per variable.
+     * side effect: will change the local cache and info of transactions, the lock tables, and waitsForGraph
+     * @param operation the scan operation
+     * @param currentTime current time
+     * @return true if every variable was read, false if blocked
+     */
+    public boolean scan(Operation operation, int currentTime) {
+        int transactionId = operation.getTransactionId();
+        int firstVariableId = operation.getVariableId();
+        int lastVariableId = operation.getLastVariableId();
+        Transaction transaction = transactions.get(transactionId);
+
+        // the variables that have to come from the sites
+        SortedMap<Integer, Integer> values = new TreeMap<>();
+        Set<Integer> missing = new HashSet<>();
+        for (int variableId = firstVariableId; variableId <= lastVariableId; variableId++) {
+            if (!dataLocation.containsKey(variableId)) {
+                continue;
+            }
+            if (transaction.hasCached(variableId)) {
+                values.put(variableId, transaction.read(variableId));
+            } else {
+                missing.add(variableId);
+            }
+        }
+
+        boolean snapshotRead = transaction.isReadOnly() || transaction.getConcurrencyMode() == ConcurrencyMode.SNAPSHOT_ISOLATION;
+        if (snapshotRead || transaction.getConcurrencyMode() == ConcurrencyMode.OPTIMISTIC) {
+            int transactionBeginTime = transaction.getBeginTime();
+            for (int siteId : sites.keySet()) {
+                Site site = sites.get(siteId);
+                if (missing.isEmpty()) {
+                    break;
+                }
+                if (!site.isUp()) {
+                    continue;
+                }
+                DataManager dataManager = site.getDataManager();
+                Map<Integer, Pair<Integer, Integer>> versions = snapshotRead
+                        ? dataManager.getSnapshots(firstVariableId, lastVariableId, transactionBeginTime)
+                        : dataManager.getLatestVersions(firstVariableId, lastVariableId);
+                for (int variableId : versions.keySet()) {
+                    int commitTime = versions.get(variableId).getKey();
+                    // a snapshot is not readable if the site failed between its commit and the transaction begin
+                    if (!missing.contains(variableId) || (snapshotRead && hasFailureBetween(siteId, commitTime, transactionBeginTime))) {
+                        continue;
+                    }
+                    if (!snapshotRead) {
+                        transaction.recordRead(variableId, siteId, commitTime);
+                        addAccessedSite(transaction, currentTime, siteId);
+                    }
+                    values.put(variableId, versions.get(variableId).getValue());
+                    missing.remove(variableId);
+                }
+            }
+        } else {
+            // firstly check if there is any blocking transactions in pending list to prevent starvation
+            Set<Integer> blockingTransactions = getBlockingTransaction(operation);
+            if (!blockingTransactions.isEmpty()) {
+                addEdgesToWaitsForGraph(transactionId, blockingTransactions, currentTime);
+                transaction.setStatus(TransactionStatus.BLOCKED);
+                return false;
+            }
+
+            // pick the first available copy of every variable, and group the variables by site
+            SortedMap<Integer, List<Integer>> variablesBySite = new TreeMap<>();
+            for (int variableId : missing) {
+                int siteId = availabilityIndex.choose(variableId, availabilityIndex.getReadableSites(variableId));
+                // if a variable has no readable copy, wait without taking any lock
+                if (siteId <= 0) {
+                    transaction.setStatus(TransactionStatus.BLOCKED);
+                    return false;
+                }
+                variablesBySite.computeIfAbsent(siteId, id -> new ArrayList<>()).add(variableId);
+            }
+
+            // check every site before taking any range lock, so a blocked scan holds none
+            Set<Integer> conflictingTransactions = new HashSet<>();
+            for (int siteId : variablesBySite.keySet()) {
+                conflictingTransactions.addAll(sites.get(siteId).getLockManager().getRangeLockConflicts(transactionId, firstVariableId, lastVariableId));
+            }
+            if (!conflictingTransactions.isEmpty()) {
+                addEdgesToWaitsForGraph(transactionId, conflictingTransactions, currentTime);
+                transaction.setStatus(TransactionStatus.BLOCKED);
+                return false;
+            }
+
+            // one range lock per site
+            for (int siteId : variablesBySite.keySet()) {
+                sites.get(siteId).getLockManager().acquireRangeLock(transactionId, firstVariableId, lastVariableId);
+                addAccessedSite(transaction, currentTime, siteId);
+            }
+
+            for (int siteId : variablesBySite.keySet()) {
+                DataManager dataManager = sites.get(siteId).getDataManager();
+                for (int variableId : variablesBySite.get(siteId)) {
+                    transaction.addLock(LockType.READ, variableId);
+                    values.put(variableId, dataManager.read(variableId));
+                    missing.remove(variableId);
+                }
+            }
+        }
+
+        // if some variables have no readable copy
+        if (!missing.isEmpty()) {
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
+
+        for (int variableId : values.keySet()) {
+            transaction.cache(variableId, values.get(variableId));
+        }
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        outputPrinter.printScanSuccess(values, transactionId);
+        return true;
+    }
+
     /**
      * Attempt to write a variable
      * side effect: will change the local cache and info of transactions, the lock table, and waitsForGraph
@@ -157,6 +311,11 @@ public class TransactionManager {
         int value = operation.getValueToWrite();
         Transaction transaction = transactions.get(transactionId);
 
+        // transactions that do not lock buffer their writes until commit
+        if (transaction.isLockFree()) {
+            return writeWithoutLocks(transactionId, variableId, value, currentTime);
+        }
+
         // if is holding the write lock, write is successful
         if (transaction.isHoldingLock(LockType.WRITE, variableId)) {
             transaction.cache(variableId, value);
@@ -166,93 +325,248 @@ public class TransactionManager {
         }
 
         // if need to acquire lock, firstly check if there is any blocking transactions in pending list to prevent starvation
-        Set<Integer> blockingTransactions = getBlockingTransaction(operation);
-        if (!blockingTransactions.isEmpty()) {
-            // if all the blocking operations are read and do not hold any lock, it means that they are waiting for a committed write to make the data copy available, so the write does not need to wait
-            boolean needToWait = false;
-            for (int blockingTransactionId : blockingTransactions) {
-                Transaction blockingTransaction = transactions.get(blockingTransactionId);
-                Operation blockingOperation = null;
-                for (Operation pendingOperation : pendingList) {
-                    if (pendingOperation.getTransactionId() == blockingTransactionId) {
-                        blockingOperation = pendingOperation;
-                    }
-                }
-                if (blockingOperation.getType() == OperationType.WRITE || blockingTransaction.isHoldingLock(LockType.READ, variableId)) {
-                    needToWait = true;
-                }
-            }
-            if (needToWait) {
-                addEdgesToWaitsForGraph(transactionId, blockingTransactions);
-                transaction.setStatus(TransactionStatus.BLOCKED);
-                return false;
-            }
+        if (mustWaitForWrite(operation, Collections.singleton(variableId), currentTime)) {
+            return false;
         }
 
-        // otherwise, try to acquire write lock
-        DataInfo dataInfo = dataLocation.get(variableId);
-        List<Integer> availableSites = dataInfo.getAvailableSites();
-        Set<Integer> accessedSites = new HashSet<>();
+        // otherwise, try to acquire write lock on every site that is up
+        long upSites = availabilityIndex.getUpSites(variableId);
 
-        boolean writeLockAvailable = true;
-        for (int siteId : availableSites) {
-            Site site = sites.get(siteId);
-            LockManager lockManager = site.getLockManager();
+        // if there is no site up, also failed
+        if (upSites == 0) {
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
 
-            // if the site is down
-            if (!site.isUp()) {
-                continue;
+        SortedMap<Integer, List<Integer>> variablesBySite = new TreeMap<>();
+        Map<Integer, Set<Integer>> readLockedVariables = new HashMap<>();   // a read lock is only held on the site the variable was read from
+        for (long remaining = upSites; remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
+            variablesBySite.put(siteId, Collections.singletonList(variableId));
+            if (sites.get(siteId).getLockManager().isHoldingLock(LockType.READ, variableId, transactionId)) {
+                readLockedVariables.put(siteId, Collections.singleton(variableId));
             }
+        }
+        if (!acquireWriteLocks(transactionId, variablesBySite, readLockedVariables, currentTime)) {
+            return false;
+        }
 
-            accessedSites.add(siteId);
+        // if all write locks acquired, write success
+        transaction.addLock(LockType.WRITE, variableId);
+        transaction.cache(variableId, value);
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        outputPrinter.printWriteSuccess(variableId, value, transactionId);
+        return true;
+    }
 
-            Set<Integer> conflictingTransactions = lockManager.acquireLock(transactionId, variableId, LockType.WRITE);
+    /**
+     * Write several variables at once, the write locks of all of them are acquired site by site in one pass
+     * Sites are visited in ascending order and the variables of a site in ascending order, so two multi-writes always request
+     * the same locks in the same order. If any lock is refused, the locks acquired by this operation are all released.
+     * side effect: will change the local cache and info of transactions, the lock tables, and waitsForGraph
+     * @param operation the multi-write operation
+     * @param currentTime current time
+     * @return true if all the variables were written, false if blocked
+     */
+    public boolean multiWrite(Operation operation, int currentTime) {
+        int transactionId = operation.getTransactionId();
+        Transaction transaction = transactions.get(transactionId);
+        SortedMap<Integer, Integer> writes = new TreeMap<>();
+        for (int variableId : operation.getWrites().keySet()) {
+            if (dataLocation.containsKey(variableId)) {
+                writes.put(variableId, operation.getWrites().get(variableId));
+            }
+        }
 
-            // if can not acquire write lock, add all conflicting transactions to the waitsForGraph
-            if (!conflictingTransactions.isEmpty() && !(conflictingTransactions.size() == 1 && conflictingTransactions.contains(transactionId))) {
-                writeLockAvailable = false;
-                addEdgesToWaitsForGraph(transactionId, conflictingTransactions);
+        // transactions that do not lock buffer their writes until commit
+        if (transaction.isLockFree()) {
+            for (int variableId : writes.keySet()) {
+                if (!writeWithoutLocks(transactionId, variableId, writes.get(variableId), currentTime)) {
+                    return false;
+                }
             }
+            return true;
         }
 
-        // if failed to acquire write lock on all available sites, release the locks that already obtained
-        if (!writeLockAvailable) {
-            boolean holdingReadLock = transaction.isHoldingLock(LockType.READ, variableId);
-            for (int siteId : availableSites) {
+        // the variables that still need a write lock, grouped by the sites that are up
+        SortedMap<Integer, List<Integer>> variablesBySite = new TreeMap<>();
+        // the read locks held before, <key : site id, value : the variables read locked there>
+        Map<Integer, Set<Integer>> readLockedVariables = new HashMap<>();
+        for (int variableId : writes.keySet()) {
+            if (transaction.isHoldingLock(LockType.WRITE, variableId)) {
+                continue;
+            }
+            boolean anySiteUp = false;
+            for (int siteId : dataLocation.get(variableId).getAvailableSites()) {
                 Site site = sites.get(siteId);
-                LockManager lockManager = site.getLockManager();
-
-                // if the site is down
-                if (!site.isUp()) {
-                    continue;
+                if (site.isUp()) {
+                    variablesBySite.computeIfAbsent(siteId, id -> new ArrayList<>()).add(variableId);
+                    anySiteUp = true;
+                    if (site.getLockManager().isHoldingLock(LockType.READ, variableId, transactionId)) {
+                        readLockedVariables.computeIfAbsent(siteId, id -> new HashSet<>()).add(variableId);
+                    }
                 }
+            }
+            // if there is no site up for one of the variables, also failed
+            if (!anySiteUp) {
+                transaction.setStatus(TransactionStatus.BLOCKED);
+                return false;
+            }
+        }
 
-                lockManager.releaseWriteLock(transactionId, variableId, holdingReadLock);
-
+        if (!variablesBySite.isEmpty()) {
+            // one starvation check for the whole operation, with the same exception as a single write
+            if (mustWaitForWrite(operation, writes.keySet(), currentTime)) {
+                return false;
+            }
+            if (!acquireWriteLocks(transactionId, variablesBySite, readLockedVariables, currentTime)) {
+                return false;
             }
+        }
 
-            // write failed
-            transaction.setStatus(TransactionStatus.BLOCKED);
+        // if all write locks acquired, write success
+        for (int variableId : writes.keySet()) {
+            int value = writes.get(variableId);
+            transaction.addLock(LockType.WRITE, variableId);
+            transaction.cache(variableId, value);
+            outputPrinter.printWriteSuccess(variableId, value, transactionId);
+        }
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        return true;
+    }
+
+    /**
+     * Commit a read-write transaction that accessed a single site
+     * Every variable it holds a write lock on was locked on that site only, so its values go straight to the data manager of
+     * the site after a single failure check.
+     * side effect: will change the data manager and lock manager of the site, transaction status and waitsForGraph
+     * @param transactionId the transaction id
+     * @param currentTime the current time
+     * @return true if committed, false if the site failed after the transaction accessed it
+     */
+    private boolean commitOnSingleSite(int transactionId, int currentTime) {
+        Transaction transaction = transactions.get(transactionId);
+        int siteId = Long.numberOfTrailingZeros(transaction.getAccessedSites()) + 1;
+        if (hasFailureBetween(siteId, transaction.getFirstAccessTime(siteId), currentTime)) {
             return false;
         }
 
-        // if there is no site up, also failed
-        if (accessedSites.isEmpty()) {
+        Site site = sites.get(siteId);
+        DataManager dataManager = site.getDataManager();
+        IntIntMap writeSet = transaction.getWriteSet();
+        for (int slot = writeSet.nextSlot(-1); slot >= 0; slot = writeSet.nextSlot(slot)) {
+            dataManager.commitVariable(currentTime, writeSet.keyAt(slot), writeSet.valueAt(slot));
+            availabilityIndex.committed(siteId, writeSet.keyAt(slot));
+        }
+        site.getLockManager().releaseAllLocks(transactionId);
+
+        removeTransactionFromWaitsForGraph(transactionId);
+        removeFromSiteIndex(transactionId);
+        unfinishedTransactions.remove(transactionId);
+        transaction.setStatus(TransactionStatus.COMMITED);
+        commitCount++;
+        outputPrinter.printCommitSuccess(transactionId);
+        return true;
+    }
+
+    /**
+     * Buffer a write in the transaction without taking locks, the sites that are up now will receive it at commit
+     * side effect: will change the local cache, write set and accessed sites of the transaction
+     * @param transactionId the transaction id
+     * @param variableId the variable to write
+     * @param value the value to write
+     * @param currentTime current time
+     * @return true if the write is successful, false if no site holding the variable is up
+     */
+    private boolean writeWithoutLocks(int transactionId, int variableId, int value, int currentTime) {
+        Transaction transaction = transactions.get(transactionId);
+
+        long upSites = availabilityIndex.getUpSites(variableId);
+        for (long remaining = upSites; remaining != 0; remaining &= remaining - 1) {
+            addAccessedSite(transaction, currentTime, Long.numberOfTrailingZeros(remaining) + 1);
+        }
+
+        // if there is no site up, the write waits
+        if (upSites == 0) {
             transaction.setStatus(TransactionStatus.BLOCKED);
             return false;
         }
 
-        // if all write locks acquired, write success
-        for (int siteId : accessedSites) {
-            transaction.addAccessedSite(currentTime, siteId);
-        }
-        transaction.addLock(LockType.WRITE, variableId);
-        transaction.cache(variableId, value);
+        transaction.bufferWrite(variableId, value);
         transaction.setStatus(TransactionStatus.ACTIVE);
         outputPrinter.printWriteSuccess(variableId, value, transactionId);
         return true;
     }
 
+    /**
+     * Validate a transaction that ran without locks and install its writes
+     * No accessed site may have failed since it was accessed. Then, under optimistic concurrency control,
+     * every copy read must not have been overwritten since; under snapshot isolation, no copy written may
+     * have been committed by anyone else since the transaction began (first committer wins).
+     * side effect: will change the status of the transaction and the data managers
+     * @param transaction the transaction to commit
+     * @param currentTime current time
+     * @return true if the validation passed and the writes are installed, false if the transaction has to abort
+     */
+    private boolean commitValidated(Transaction transaction, int currentTime) {
+        int transactionId = transaction.id;
+        long accessedSites = transaction.getAccessedSites();
+
+        // every accessed site must have stayed up since it was accessed
+        for (long remaining = accessedSites; remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
+            if (hasFailureBetween(siteId, transaction.getFirstAccessTime(siteId), currentTime)) {
+                return false;
+            }
+        }
+
+        // every version read must still be the latest committed one
+        IntIntMap readSites = transaction.getReadSites();
+        for (int slot = readSites.nextSlot(-1); slot >= 0; slot = readSites.nextSlot(slot)) {
+            int variableId = readSites.keyAt(slot);
+            int commitTime = transaction.getReadCommitTimes().get(variableId, -1);
+            if (sites.get(readSites.valueAt(slot)).getDataManager().getLatestCommitTime(variableId) != commitTime) {
+                return false;
+            }
+        }
+
+        // no variable written may have been committed by another transaction after this one began
+        IntIntMap writeSet = transaction.getWriteSet();
+        if (transaction.getConcurrencyMode() == ConcurrencyMode.SNAPSHOT_ISOLATION) {
+            for (int slot = writeSet.nextSlot(-1); slot >= 0; slot = writeSet.nextSlot(slot)) {
+                int variableId = writeSet.keyAt(slot);
+                for (int siteId : dataLocation.get(variableId).getAvailableSites()) {
+                    if (transaction.hasAccessed(siteId)
+                            && sites.get(siteId).getDataManager().getLatestCommitTime(variableId) > transaction.getBeginTime()) {
+                        return false;
+                    }
+                }
+            }
+        }
+
+        // install the writes on every accessed site that holds the variable
+        for (long remaining = accessedSites; remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
+            Map<Integer, Integer> writtenValues = new HashMap<>();
+            for (int slot = writeSet.nextSlot(-1); slot >= 0; slot = writeSet.nextSlot(slot)) {
+                if (availabilityIndex.holds(siteId, writeSet.keyAt(slot))) {
+                    writtenValues.put(writeSet.keyAt(slot), writeSet.valueAt(slot));
+                }
+            }
+            if (!writtenValues.isEmpty()) {
+                sites.get(siteId).commitWithoutLocks(currentTime, writtenValues);
+                availabilityIndex.committed(siteId, writtenValues.keySet());
+            }
+        }
+
+        removeFromSiteIndex(transactionId);
+        unfinishedTransactions.remove(transactionId);
+        transaction.setStatus(TransactionStatus.COMMITED);
+        commitCount++;
+        outputPrinter.printCommitSuccess(transactionId);
+        return true;
+    }
+
     /**
      * Attempt to commit a transaction
      * side effect: will change the status of transactions, the lock manager, the data manager, and waitsForGraph
@@ -262,23 +576,33 @@ public class TransactionManager {
      */
     public boolean commit(int transactionId, int currentTime) {
         Transaction transaction = transactions.get(transactionId);
-        Map<Integer, Integer> accessedSites = transaction.getAccessedSites();
+        long accessedSites = transaction.getAccessedSites();
 
         // if read-only transaction
         if (transaction.isReadOnly()) {
             transaction.setStatus(TransactionStatus.COMMITED);
+            commitCount++;
             outputPrinter.printCommitSuccess(transactionId);
             return true;
         }
 
+        // if the transaction ran without locks, validate it instead
+        if (transaction.isLockFree()) {
+            return commitValidated(transaction, currentTime);
+        }
+
+        // if the transaction only accessed one site, there is nothing to agree on
+        if (transaction.getAccessedSiteCount() == 1) {
+            return commitOnSingleSite(transactionId, currentTime);
+        }
+
         // if read-write transaction, two phase commit
         boolean canCommit = true;
 
         // consensus
-        for (int siteId : accessedSites.keySet()) {
-            Site site = sites.get(siteId);
-            int firstAccessTime = accessedSites.get(siteId);
-            if (hasFailureBetween(siteId, firstAccessTime, currentTime)) {
+        for (long remaining = accessedSites; remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
+            if (hasFailureBetween(siteId, transaction.getFirstAccessTime(siteId), currentTime)) {
                 canCommit = false;
                 break;
             }
@@ -289,24 +613,19 @@ public class TransactionManager {
             return false;
         }
 
-        // if can commit, firstly get all the written variables
-        Map<Integer, Integer> updatedVariables = new HashMap<>();
-        Map<Integer, Integer> localCache = transaction.getLocalCache();
-        for (int variableId : localCache.keySet()) {
-            if (transaction.isHoldingLock(LockType.WRITE, variableId)) {
-                updatedVariables.put(variableId, localCache.get(variableId));
-            }
-        }
-
-        // commit on every site
-        for (int siteId : accessedSites.keySet()) {
+        // if can commit, commit the written variables on every site
+        for (long remaining = accessedSites; remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
             Site site = sites.get(siteId);
-            site.commit(transactionId, currentTime, updatedVariables);
+            availabilityIndex.committed(siteId, site.commit(transactionId, currentTime, transaction.getWriteSet()));
         }
 
         // successfully committed
         removeTransactionFromWaitsForGraph(transactionId);
+        removeFromSiteIndex(transactionId);
+        unfinishedTransactions.remove(transactionId);
         transaction.setStatus(TransactionStatus.COMMITED);
+        commitCount++;
         outputPrinter.printCommitSuccess(transactionId);
         return true;
     }
@@ -318,29 +637,156 @@ public class TransactionManager {
      */
     public void abort(int transactionId) {
         Transaction transaction = transactions.get(transactionId);
-        Map<Integer, Integer> accessedSites = transaction.getAccessedSites();
 
-        for (int siteId : accessedSites.keySet()) {
-            Site site = sites.get(siteId);
-            if (site.isUp()) {
-                site.abort(transactionId);
+        // a transaction that never took locks has nothing to release
+        if (!transaction.isLockFree()) {
+            for (long remaining = transaction.getAccessedSites(); remaining != 0; remaining &= remaining - 1) {
+                Site site = sites.get(Long.numberOfTrailingZeros(remaining) + 1);
+                if (site.isUp()) {
+                    site.abort(transactionId);
+                }
             }
+            removeTransactionFromWaitsForGraph(transactionId);
         }
-        removeTransactionFromWaitsForGraph(transactionId);
+        removeFromSiteIndex(transactionId);
+        unfinishedTransactions.remove(transactionId);
         transaction.setStatus(TransactionStatus.ABORTED);
+        abortCount++;
         outputPrinter.printAbortSuccess(transactionId);
     }
 
     /**
-     * Begin a read-write transaction
-     * side effect: will change transactions
+     * Begin a read-write transaction, a transaction that declares its access set also takes all its locks
+     * side effect: will change transactions, and the lock tables if the access set is declared
      * @param operation the begin operation
+     * @param currentTime current time
+     * @return true if the transaction began, false if it is waiting for its declared locks
      */
-    public void begin(Operation operation) {
+    public boolean begin(Operation operation, int currentTime) {
         int transactionId = operation.getTransactionId();
         int time = operation.getArrivingTime();
-        Transaction transaction = new Transaction(transactionId, time, TransactionType.READ_WRITE);
+        Transaction transaction = transactions.get(transactionId);
+        // a begin with declared access set is retried until it gets all its locks
+        if (transaction == null) {
+            transaction = new Transaction(transactionId, time, TransactionType.READ_WRITE, concurrencyMode);
+            transactions.put(transactionId, transaction);
+            unfinishedTransactions.add(transactionId);
+        }
+        if (operation.hasDeclaredAccess() && !transaction.isLockFree()) {
+            return acquireDeclaredLocks(operation, currentTime);
+        }
+        return true;
+    }
+
+    /**
+     * Take all the locks of a declared access set at once (conservative two phase locking)
+     * The locks are requested in ascending (site, variable) order. If any of them is not available, the ones already taken are
+     * released and the transaction waits without adding edges to the waitsForGraph, so it can never be part of a deadlock.
+     * The declared reads are read into the local cache while the locks are held, so the later operations of the transaction on
+     * declared variables never wait.
+     * side effect: will change the lock tables, the local cache and info of the transaction
+     * @param operation the begin operation
+     * @param currentTime current time
+     * @return true if all the locks are taken, false if the transaction has to wait
+     */
+    private boolean acquireDeclaredLocks(Operation operation, int currentTime) {
+        int transactionId = operation.getTransactionId();
+        Transaction transaction = transactions.get(transactionId);
+
+        // plan the locks, <key : site id, value : <key : variable id, value : lock type>>
+        SortedMap<Integer, SortedMap<Integer, LockType>> plannedLocks = new TreeMap<>();
+        Set<Integer> declaredVariables = new TreeSet<>(operation.getDeclaredReads());
+        declaredVariables.addAll(operation.getDeclaredWrites());
+        for (int variableId : declaredVariables) {
+            if (!dataLocation.containsKey(variableId)) {
+                continue;
+            }
+            boolean write = operation.getDeclaredWrites().contains(variableId);
+            boolean planned = false;
+            for (int siteId : dataLocation.get(variableId).getAvailableSites()) {
+                Site site = sites.get(siteId);
+                // a write locks every copy that is up, a read locks the first copy it can read
+                if (!site.isUp() || (!write && !site.getDataManager().readAvailable(variableId))) {
+                    continue;
+                }
+                plannedLocks.computeIfAbsent(siteId, id -> new TreeMap<>()).put(variableId, write ? LockType.WRITE : LockType.READ);
+                planned = true;
+                if (!write) {
+                    break;
+                }
+            }
+            // if a variable can not be accessed now, wait
+            if (!planned) {
+                transaction.setStatus(TransactionStatus.BLOCKED);
+                return false;
+            }
+        }
+
+        boolean allLocksAvailable = true;
+        for (int siteId : plannedLocks.keySet()) {
+            LockManager lockManager = sites.get(siteId).getLockManager();
+            for (Map.Entry<Integer, LockType> lock : plannedLocks.get(siteId).entrySet()) {
+                Set<Integer> conflictingTransactions = lockManager.acquireLock(transactionId, lock.getKey(), lock.getValue());
+                conflictingTransactions.remove(transactionId);
+                if (!conflictingTransactions.isEmpty()) {
+                    allLocksAvailable = false;
+                    break;
+                }
+            }
+            if (!allLocksAvailable) {
+                break;
+            }
+        }
+
+        // if any lock is not available, release all of them and wait
+        if (!allLocksAvailable) {
+            for (int siteId : plannedLocks.keySet()) {
+                LockManager lockManager = sites.get(siteId).getLockManager();
+                for (int variableId : plannedLocks.get(siteId).keySet()) {
+                    lockManager.releaseLock(transactionId, variableId);
+                }
+            }
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
+
+        for (int siteId : plannedLocks.keySet()) {
+            DataManager dataManager = sites.get(siteId).getDataManager();
+            for (Map.Entry<Integer, LockType> lock : plannedLocks.get(siteId).entrySet()) {
+                int variableId = lock.getKey();
+                transaction.addLock(lock.getValue(), variableId);
+                if (operation.getDeclaredReads().contains(variableId) && !transaction.hasCached(variableId)
+                        && dataManager.readAvailable(variableId)) {
+                    transaction.cache(variableId, dataManager.read(variableId));
+                }
+            }
+            addAccessedSite(transaction, currentTime, siteId);
+        }
+        transaction.setStatus(TransactionStatus.ACTIVE);
+        return true;
+    }
+
+    /**
+     * Record a one-shot transaction that the sequencer has run, it is committed as soon as it exists
+     * side effect: will change transactions
+     * @param transactionId the transaction id
+     * @param beginTime the time the transaction was submitted
+     */
+    void commitOneShot(int transactionId, int beginTime) {
+        Transaction transaction = new Transaction(transactionId, beginTime, TransactionType.READ_WRITE);
+        transaction.setStatus(TransactionStatus.COMMITED);
         transactions.put(transactionId, transaction);
+        commitCount++;
+        outputPrinter.printCommitSuccess(transactionId);
+    }
+
+    /**
+     * Getting where a variable is stored
+     * @param variableId the variable id
+     * @return the data distribution information, null if the variable does not exist
+     */
+    DataInfo getDataInfo(int variableId) {
+        return dataLocation.get(variableId);
     }
 
     /**
@@ -365,7 +811,7 @@ public class TransactionManager {
         boolean executionSuccessful = true;
         switch(operation.getType()) {
             case BEGIN:
-                begin(operation);
+                executionSuccessful = begin(operation, currentTime);
                 break;
             case BEGIN_READ_ONLY:
                 beginRO(operation);
@@ -384,6 +830,12 @@ public class TransactionManager {
             case WRITE:
                 executionSuccessful = write(operation, currentTime);
                 break;
+            case SCAN:
+                executionSuccessful = scan(operation, currentTime);
+                break;
+            case MULTI_WRITE:
+                executionSuccessful = multiWrite(operation, currentTime);
+                break;
         }
 
         return executionSuccessful;
@@ -398,9 +850,27 @@ public class TransactionManager {
     public void handleNewRequest(Operation operation, int currentTime) {
         Transaction transaction = transactions.get(operation.getTransactionId());
 
+        // the operations of an aborted transaction are ignored
+        if (transaction != null && transaction.getStatus() == TransactionStatus.ABORTED) {
+            return;
+        }
+
+        // a doomed transaction only reports its abort when it ends
+        if (transaction != null && transaction.getStatus() == TransactionStatus.DOOMED) {
+            if (operation.getType() == OperationType.COMMIT) {
+                abortDoomed(operation.getTransactionId(), currentTime);
+            }
+            return;
+        }
+
+        if (adaptiveReplication != null) {
+            recordAccess(operation);
+        }
+
         // if the transaction is currently blocked, add this operation to pending list
         if (transaction != null && transaction.getStatus() == TransactionStatus.BLOCKED) {
             pendingList.add(operation);
+            return;
         }
 
         // if the execution is not successful, add the operation to pending list
@@ -408,13 +878,48 @@ public class TransactionManager {
             pendingList.add(operation);
         }
 
+        // if the deadlock policy chose victims while the operation ran, their locks may unblock others
+        if (abortVictims()) {
+            retry(currentTime);
+        }
+
+    }
+
+    /**
+     * Abort a transaction that is still running and drop its pending operations, will be called when its client goes away
+     * side effect: will change pending list, lock manager, transaction status, and waitsForGraph
+     * @param transactionId the transaction to cancel
+     * @param currentTime the current time
+     */
+    public void cancel(int transactionId, int currentTime) {
+        Transaction transaction = transactions.get(transactionId);
+        if (transaction == null || transaction.getStatus() == TransactionStatus.COMMITED || transaction.getStatus() == TransactionStatus.ABORTED) {
+            return;
+        }
+        if (transaction.getStatus() == TransactionStatus.DOOMED) {
+            abortDoomed(transactionId, currentTime);
+            return;
+        }
+        pendingList.removeIf(operation -> operation.getTransactionId() == transactionId);
+        abort(transactionId);
+        retry(currentTime);
+    }
+
+    /**
+     * Iterate through the pending list and retry, again after aborting the victims the deadlock policy chose meanwhile
+     * @param currentTime the current time
+     */
+    public void retry(int currentTime) {
+        do {
+            retryPendingOperations(currentTime);
+        } while (abortVictims());
     }
 
     /**
-     * Iterate through the pending list and retry
+     * Helper method for a single pass over the pending list
      * @param currentTime the current time
      */
-    public void retry(int currentTime) {
+    private void retryPendingOperations(int currentTime) {
         // maintain a set of transaction that are still blocked, initially the set is empty
         Set<Integer> remainBlockedTransactions = new HashSet<>();
 
@@ -429,7 +934,15 @@ public class TransactionManager {
                 continue;
             }
 
+            // drop the operations of transactions aborted while they were waiting
+            if (transactions.get(transactionId).getStatus() == TransactionStatus.ABORTED) {
+                finishedOperations.add(operation);
+                continue;
+            }
+
+            // the later operations of a waiting transaction must not run ahead of its first one
             if (waitsForGraph.getOrDefault(transactionId, new HashSet<>()).size() > 0) {
+                remainBlockedTransactions.add(transactionId);
                 continue;
             }
 
@@ -471,11 +984,13 @@ public class TransactionManager {
     }
 
     /**
-     * Add edges to waits for graph
+     * Add edges to waits for graph and let the deadlock policy decide whether someone has to be aborted instead
+     * side effect: will change waitsForGraph and victims
      * @param source the source node
      * @param destinations the destination nodes
+     * @param currentTime current time
      */
-    private void addEdgesToWaitsForGraph(int source, Set<Integer> destinations) {
+    private void addEdgesToWaitsForGraph(int source, Set<Integer> destinations, int currentTime) {
         Set<Integer> vertices = waitsForGraph.getOrDefault(source, new HashSet<>());
         for (int destination : destinations) {
             if (source != destination) {
@@ -483,6 +998,271 @@ public class TransactionManager {
             }
         }
         waitsForGraph.put(source, vertices);
+        victims.addAll(deadlockPolicy.onWait(this, source, destinations, currentTime));
+    }
+
+    /**
+     * Abort the victims the deadlock policy chose while the last operation was running
+     * side effect: will change victims and abort transactions
+     * @return true if any transaction was aborted
+     */
+    private boolean abortVictims() {
+        if (victims.isEmpty()) {
+            return false;
+        }
+        boolean aborted = false;
+        for (int victim : new ArrayList<>(victims)) {
+            aborted |= abortVictim(victim);
+        }
+        victims.clear();
+        return aborted;
+    }
+
+    /**
+     * Abort a transaction chosen by the deadlock policy, unless it already finished
+     * side effect: will change lock manager, transaction status, and waitsForGraph
+     * @param transactionId the victim
+     * @return true if the transaction was aborted
+     */
+    boolean abortVictim(int transactionId) {
+        TransactionStatus status = transactions.get(transactionId).getStatus();
+        if (status == TransactionStatus.COMMITED || status == TransactionStatus.ABORTED || status == TransactionStatus.DOOMED) {
+            return false;
+        }
+        victimCount++;
+        abort(transactionId);
+        return true;
+    }
+
+    /**
+     * Let the deadlock policy run its per-tick work, will be called at the beginning of every tick
+     * side effect: might abort transactions
+     * @param currentTime current time
+     * @return true if any transaction was aborted
+     */
+    public boolean resolveDeadlocks(int currentTime) {
+        return deadlockPolicy.onTick(this, currentTime);
+    }
+
+    /**
+     * Set how deadlocks are handled
+     * @param deadlockPolicy the policy, deadlock detection by default
+     */
+    public void setDeadlockPolicy(DeadlockPolicy deadlockPolicy) {
+        this.deadlockPolicy = deadlockPolicy;
+    }
+
+    /**
+     * Set the mode read-write transactions run under, before the first transaction begins
+     * Locking transactions and transactions validated at commit must not run together, since validation ignores the locks.
+     * @param concurrencyMode the mode, locking by default
+     * @throws IllegalStateException if a transaction has already begun
+     */
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        if (!transactions.isEmpty()) {
+            throw new IllegalStateException("the concurrency mode can only be set before the first transaction begins");
+        }
+        this.concurrencyMode = concurrencyMode;
+    }
+
+    /**
+     * Getter of the concurrency mode
+     * @return the mode new read-write transactions run under
+     */
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    /**
+     * Getter of the deadlock policy
+     * @return the deadlock policy
+     */
+    public DeadlockPolicy getDeadlockPolicy() {
+        return deadlockPolicy;
+    }
+
+    /**
+     * Move the variables whose placement changed, the ones that are in use move later
+     * side effect: will change pendingMoves, and dataLocation and the data managers for the variables that move now
+     * @param targetLocation <key : variableId, value : the new data distribution information>
+     */
+    public void rebalance(Map<Integer, DataInfo> targetLocation) {
+        for (int variableId : targetLocation.keySet()) {
+            DataInfo target = targetLocation.get(variableId);
+            DataInfo current = dataLocation.get(variableId);
+            if (current.getAvailableSites().equals(target.getAvailableSites()) && current.getType() == target.getType()) {
+                pendingMoves.remove(variableId);
+            } else {
+                pendingMoves.put(variableId, target);
+            }
+        }
+        applyPendingMoves();
+    }
+
+    /**
+     * Setter of the adaptive replication
+     * @param adaptiveReplication the adaptive replication, null to keep the replication fixed
+     */
+    public void setAdaptiveReplication(AdaptiveReplication adaptiveReplication) {
+        this.adaptiveReplication = adaptiveReplication;
+    }
+
+    /**
+     * Getter of the adaptive replication
+     * @return the adaptive replication, null if the replication is fixed
+     */
+    public AdaptiveReplication getAdaptiveReplication() {
+        return adaptiveReplication;
+    }
+
+    /**
+     * Let the adaptive replication change the copies of the variables at the end of its window, the copies move like a rebalance
+     * side effect: might change pendingMoves
+     * @param currentTime the current time
+     */
+    public void adaptReplication(int currentTime) {
+        if (adaptiveReplication == null) {
+            return;
+        }
+        SortedMap<Integer, DataInfo> targets = adaptiveReplication.decide(currentTime, dataLocation, sites, pendingMoves.keySet());
+        if (targets.isEmpty()) {
+            return;
+        }
+        List<ReplicationDecision> decisions = adaptiveReplication.getDecisions();
+        for (ReplicationDecision decision : decisions.subList(decisions.size() - targets.size(), decisions.size())) {
+            outputPrinter.printReplicationDecision(decision);
+        }
+        pendingMoves.putAll(targets);
+    }
+
+    /**
+     * Helper method for counting the reads and writes of a new operation for the adaptive replication
+     * @param operation the new operation
+     */
+    private void recordAccess(Operation operation) {
+        OperationType type = operation.getType();
+        if (type == OperationType.READ || type == OperationType.SCAN) {
+            for (int variableId : operation.getVariableIds()) {
+                adaptiveReplication.recordRead(variableId);
+            }
+        } else if (type == OperationType.WRITE || type == OperationType.MULTI_WRITE) {
+            for (int variableId : operation.getVariableIds()) {
+                adaptiveReplication.recordWrite(variableId);
+            }
+        }
+    }
+
+    /**
+     * Check whether any variable waits to move
+     * @return true if some moves are deferred
+     */
+    public boolean hasPendingMoves() {
+        return !pendingMoves.isEmpty();
+    }
+
+    /**
+     * Move every deferred variable that is no longer in use
+     * A variable moves with its whole version chain, copied from a readable copy on a site that is up and never failed, so
+     * snapshot reads keep working. It waits while it is locked, cached by an unfinished transaction or accessed by a pending
+     * operation, while no such copy exists, or while a new site for it is down.
+     * side effect: will change pendingMoves, dataLocation and the data managers
+     */
+    public void applyPendingMoves() {
+        Iterator<Map.Entry<Integer, DataInfo>> iterator = pendingMoves.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Integer, DataInfo> move = iterator.next();
+            int variableId = move.getKey();
+            DataInfo target = move.getValue();
+            List<Integer> oldSites = dataLocation.get(variableId).getAvailableSites();
+
+            // a site that failed may have missed commits, its version chain has gaps that snapshot reads on the targets would not see
+            long completeSites = availabilityIndex.getReadableSites(variableId);
+            for (int siteId : failureHistory.keySet()) {
+                if (!failureHistory.get(siteId).isEmpty()) {
+                    completeSites &= ~AvailabilityIndex.bit(siteId);
+                }
+            }
+            int sourceSiteId = availabilityIndex.choose(variableId, completeSites);
+            DataCopy source = sourceSiteId < 0 ? null : sites.get(sourceSiteId).getDataManager().getDataCopy(variableId);
+            boolean targetsUp = true;
+            for (int siteId : target.getAvailableSites()) {
+                targetsUp &= sites.get(siteId).isUp();
+            }
+            if (source == null || !targetsUp || isInUse(variableId)) {
+                continue;
+            }
+
+            for (int siteId : oldSites) {
+                sites.get(siteId).getDataManager().setDataCopy(variableId, null);
+            }
+            for (int siteId : target.getAvailableSites()) {
+                // the source is readable, so are the moved copies
+                DataCopy movedCopy = source.copy(target.getType());
+                movedCopy.setReadAvailable(true);
+                sites.get(siteId).getDataManager().setDataCopy(variableId, movedCopy);
+            }
+            dataLocation.put(variableId, target);
+            availabilityIndex.place(target);
+            iterator.remove();
+            outputPrinter.printMove(variableId, oldSites, target.getAvailableSites());
+        }
+    }
+
+    /**
+     * Helper method for checking whether moving a variable could change what a transaction sees or where it writes
+     * @param variableId the variable id
+     * @return true if the variable is locked, cached by an unfinished read-write transaction or accessed by a pending operation
+     */
+    private boolean isInUse(int variableId) {
+        for (int siteId : dataLocation.get(variableId).getAvailableSites()) {
+            if (sites.get(siteId).getLockManager().isLocked(variableId)) {
+                return true;
+            }
+        }
+        for (Operation operation : pendingList) {
+            if (operation.covers(variableId)) {
+                return true;
+            }
+        }
+        for (int transactionId : unfinishedTransactions) {
+            if (transactions.get(transactionId).hasCached(variableId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get a transaction by id
+     * @param transactionId the transaction id
+     * @return the transaction, null if it never began
+     */
+    Transaction getTransaction(int transactionId) {
+        return transactions.get(transactionId);
+    }
+
+    /**
+     * Getter of the number of committed transactions
+     * @return the number of commits
+     */
+    public int getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Getter of the number of aborted transactions, for any reason
+     * @return the number of aborts
+     */
+    public int getAbortCount() {
+        return abortCount;
+    }
+
+    /**
+     * Getter of the number of transactions aborted by the deadlock policy
+     * @return the number of deadlock victims
+     */
+    public int getVictimCount() {
+        return victimCount;
     }
 
     /**
@@ -514,6 +1294,7 @@ public class TransactionManager {
                     }
                 }
                 outputPrinter.printDeadlock(victim);
+                victimCount++;
                 abort(victim);
                 detected = true;
             }
@@ -598,35 +1379,37 @@ public class TransactionManager {
     }
 
     /**
-     * Initialize transaction manager
+     * Initialize transaction manager with the original placement of twenty variables
      * @param sites sites
      * @param outputPrinter output helper
      */
     public TransactionManager(Map<Integer, Site> sites, OutputPrinter outputPrinter) {
+        this(sites, outputPrinter, PlacementPolicy.buildDataLocation(new DefaultPlacement(), 20, new ArrayList<>(new TreeSet<>(sites.keySet()))));
+    }
+
+    /**
+     * Initialize transaction manager
+     * @param sites sites
+     * @param outputPrinter output helper
+     * @param dataLocation <key : variableId, value : data distribution information>, built by a placement policy
+     */
+    public TransactionManager(Map<Integer, Site> sites, OutputPrinter outputPrinter, Map<Integer, DataInfo> dataLocation) {
 
         this.sites = sites;
         this.outputPrinter = outputPrinter;
+        this.dataLocation = new HashMap<>(dataLocation);
         transactions = new HashMap<>();
-        dataLocation = new HashMap<>();
         pendingList = new ArrayList<>();
         waitsForGraph = new HashMap<>();
         failureHistory= new HashMap<>();
-
-        // initialize data location information
-        for (int i = 1; i <= 20; i++) {
-            List<Integer> availableSites = new ArrayList<>();
-            DataInfo dataInfo;
-            if (i % 2 == 0) {
-                for (int j = 1; j <= 10; j++) {
-                    availableSites.add(j);
-                }
-                dataInfo = new DataInfo(i, DataType.REPLICATED, availableSites);
-            } else {
-                availableSites.add(1 + i % 10);
-                dataInfo = new DataInfo(i, DataType.NOT_REPLICATED, availableSites);
-            }
-            dataLocation.put(i, dataInfo);
-        }
+        deadlockPolicy = new DeadlockDetectionPolicy();
+        concurrencyMode = ConcurrencyMode.LOCKING;
+        victims = new HashSet<>();
+        activeTransactionsBySite = new HashMap<>();
+        unfinishedTransactions = new HashSet<>();
+        doomedTransactions = new HashMap<>();
+        pendingMoves = new TreeMap<>();
+        availabilityIndex = new AvailabilityIndex(this.dataLocation, sites.keySet());
     }
 
     /**
@@ -642,9 +1425,251 @@ public class TransactionManager {
      * @param time the failed time
      */
     public void receiveFailureNotice(int siteId, int time) {
+        availabilityIndex.siteFailed(siteId);
         List<Integer> history = failureHistory.getOrDefault(siteId, new ArrayList<>());
         history.add(time);
         failureHistory.put(siteId, history);
+
+        // every transaction that accessed the site will fail its commit, so stop it from holding locks until then
+        Set<Integer> affectedTransactions = activeTransactionsBySite.remove(siteId);
+        if (proactiveAbort && affectedTransactions != null && !affectedTransactions.isEmpty()) {
+            for (int transactionId : new TreeSet<>(affectedTransactions)) {
+                doom(transactionId, time);
+            }
+            retry(time);
+        }
+    }
+
+    /**
+     * Record the recovery of a site, its non-replicated copies can be read again
+     * side effect: will change the availability index
+     * @param siteId the recovered site id
+     */
+    public void receiveRecoveryNotice(int siteId) {
+        availabilityIndex.siteRecovered(siteId);
+    }
+
+    /**
+     * Start tracking a site added while running, it holds no variable until the next rebalance
+     * side effect: will change the availability index
+     * @param siteId the new site id
+     */
+    public void receiveNewSite(int siteId) {
+        availabilityIndex.addSite(siteId);
+    }
+
+    /**
+     * Record the variables a site committed outside of the transaction manager, e.g. the writes of one-shot transactions
+     * side effect: will change the availability index
+     * @param siteId the site id
+     * @param variableIds the variables committed
+     */
+    void receiveCommitNotice(int siteId, Collection<Integer> variableIds) {
+        availabilityIndex.committed(siteId, variableIds);
+    }
+
+    /**
+     * Release everything a transaction holds because it can no longer commit, the abort is reported when the transaction ends
+     * or at once if its commit was already waiting
+     * side effect: will change the lock tables, pendingList, waitsForGraph and the transaction status
+     * @param transactionId the transaction id
+     * @param time the current time
+     */
+    private void doom(int transactionId, int time) {
+        Transaction transaction = transactions.get(transactionId);
+        for (long remaining = transaction.getAccessedSites(); remaining != 0; remaining &= remaining - 1) {
+            Site site = sites.get(Long.numberOfTrailingZeros(remaining) + 1);
+            if (site.isUp()) {
+                site.abort(transactionId);
+            }
+        }
+        int waitingTransactions = 0;
+        for (Set<Integer> destinations : waitsForGraph.values()) {
+            if (destinations.contains(transactionId)) {
+                waitingTransactions++;
+            }
+        }
+        removeTransactionFromWaitsForGraph(transactionId);
+        removeFromSiteIndex(transactionId);
+        boolean commitPending = false;
+        Iterator<Operation> iterator = pendingList.iterator();
+        while (iterator.hasNext()) {
+            Operation operation = iterator.next();
+            if (operation.getTransactionId() == transactionId) {
+                commitPending |= operation.getType() == OperationType.COMMIT;
+                iterator.remove();
+            }
+        }
+        transaction.setStatus(TransactionStatus.DOOMED);
+        doomedTransactions.put(transactionId, new int[]{time, waitingTransactions});
+        doomedCount++;
+
+        // the transaction already ended, so no later commit will report its abort
+        if (commitPending) {
+            abortDoomed(transactionId, time);
+        }
+    }
+
+    /**
+     * Report the abort of a doomed transaction when it ends
+     * side effect: will change the transaction status
+     * @param transactionId the transaction id
+     * @param time the current time
+     */
+    private void abortDoomed(int transactionId, int time) {
+        int[] doomed = doomedTransactions.remove(transactionId);
+        earlyReleaseTicks += time - doomed[0];
+        waitingTicksSaved += (long) doomed[1] * (time - doomed[0]);
+        unfinishedTransactions.remove(transactionId);
+        transactions.get(transactionId).setStatus(TransactionStatus.ABORTED);
+        abortCount++;
+        outputPrinter.printAbortSuccess(transactionId);
+    }
+
+    /**
+     * Record that a transaction accessed a site
+     * side effect: will change the accessed sites of the transaction and activeTransactionsBySite
+     * @param transaction the transaction
+     * @param currentTime current time
+     * @param siteId the site id
+     */
+    private void addAccessedSite(Transaction transaction, int currentTime, int siteId) {
+        if (transaction.hasAccessed(siteId)) {
+            return;
+        }
+        transaction.addAccessedSite(currentTime, siteId);
+        activeTransactionsBySite.computeIfAbsent(siteId, id -> new HashSet<>()).add(transaction.id);
+    }
+
+    /**
+     * Remove a finished transaction from the index of the sites it accessed
+     * side effect: will change activeTransactionsBySite
+     * @param transactionId the transaction id
+     */
+    private void removeFromSiteIndex(int transactionId) {
+        for (long remaining = transactions.get(transactionId).getAccessedSites(); remaining != 0; remaining &= remaining - 1) {
+            int siteId = Long.numberOfTrailingZeros(remaining) + 1;
+            Set<Integer> activeTransactions = activeTransactionsBySite.get(siteId);
+            if (activeTransactions != null) {
+                activeTransactions.remove(transactionId);
+            }
+        }
+    }
+
+    /**
+     * Set whether a site failure aborts the transactions that accessed the site at once
+     * @param proactiveAbort true to release their locks at failure time and report the abort at their end
+     */
+    public void setProactiveAbort(boolean proactiveAbort) {
+        this.proactiveAbort = proactiveAbort;
+    }
+
+    /**
+     * Getter of whether a site failure aborts the transactions that accessed the site at once
+     * @return true if proactive abort is on
+     */
+    public boolean isProactiveAbort() {
+        return proactiveAbort;
+    }
+
+    /**
+     * Getter of the number of transactions doomed by site failures
+     * @return the number of doomed transactions
+     */
+    public int getDoomedCount() {
+        return doomedCount;
+    }
+
+    /**
+     * Getter of the ticks between doom and end, summed over the doomed transactions that ended
+     * @return how many ticks earlier their locks were released
+     */
+    public long getEarlyReleaseTicks() {
+        return earlyReleaseTicks;
+    }
+
+    /**
+     * Getter of the ticks between doom and end, counted once for every transaction that was waiting for a doomed one
+     * @return an estimate of the blocked time saved, since a waiter may also have been waiting for others
+     */
+    public long getWaitingTicksSaved() {
+        return waitingTicksSaved;
+    }
+
+    /**
+     * Helper method for the starvation check of a write or a multi-write, before it acquires any lock
+     * The operation waits for the blocking transactions in pending list, unless they are all reads that hold no read lock on
+     * the variables: those are waiting for a committed write to make the data copy available, so the write does not need to wait.
+     * side effect: might change waitsForGraph and the transaction status
+     * @param operation the write or multi-write operation
+     * @param variableIds the variables it writes
+     * @param currentTime current time
+     * @return true if the operation is blocked
+     */
+    private boolean mustWaitForWrite(Operation operation, Collection<Integer> variableIds, int currentTime) {
+        int transactionId = operation.getTransactionId();
+        Set<Integer> blockingTransactions = getBlockingTransaction(operation);
+        boolean needToWait = false;
+        for (int blockingTransactionId : blockingTransactions) {
+            Transaction blockingTransaction = transactions.get(blockingTransactionId);
+            Operation blockingOperation = null;
+            for (Operation pendingOperation : pendingList) {
+                if (pendingOperation.getTransactionId() == blockingTransactionId) {
+                    blockingOperation = pendingOperation;
+                }
+            }
+            if (blockingOperation.getLockType() == LockType.WRITE) {
+                needToWait = true;
+            }
+            for (int variableId : variableIds) {
+                if (blockingTransaction.isHoldingLock(LockType.READ, variableId)) {
+                    needToWait = true;
+                }
+            }
+        }
+        if (needToWait) {
+            addEdgesToWaitsForGraph(transactionId, blockingTransactions, currentTime);
+            transactions.get(transactionId).setStatus(TransactionStatus.BLOCKED);
+        }
+        return needToWait;
+    }
+
+    /**
+     * Helper method for acquiring the write locks of a write or a multi-write, site by site in ascending order
+     * If any lock is refused, the locks acquired here are all released and the read locks held before are restored.
+     * side effect: might change the lock tables, waitsForGraph, the transaction status and accessed sites
+     * @param transactionId the transaction id
+     * @param variablesBySite <key : site id, value : the variables to write lock there, in ascending order>
+     * @param readLockedVariables <key : site id, value : the variables read locked there before>
+     * @param currentTime current time
+     * @return true if all the locks were acquired
+     */
+    private boolean acquireWriteLocks(int transactionId, SortedMap<Integer, List<Integer>> variablesBySite,
+                                      Map<Integer, Set<Integer>> readLockedVariables, int currentTime) {
+        Transaction transaction = transactions.get(transactionId);
+        Set<Integer> conflictingTransactions = new HashSet<>();
+        for (int siteId : variablesBySite.keySet()) {
+            conflictingTransactions.addAll(sites.get(siteId).getLockManager().acquireWriteLocks(transactionId, variablesBySite.get(siteId)));
+        }
+
+        // if any lock is refused, release all of them together
+        if (!conflictingTransactions.isEmpty()) {
+            for (int siteId : variablesBySite.keySet()) {
+                LockManager lockManager = sites.get(siteId).getLockManager();
+                for (int variableId : variablesBySite.get(siteId)) {
+                    lockManager.releaseWriteLock(transactionId, variableId,
+                            readLockedVariables.getOrDefault(siteId, Collections.emptySet()).contains(variableId));
+                }
+            }
+            addEdgesToWaitsForGraph(transactionId, conflictingTransactions, currentTime);
+            transaction.setStatus(TransactionStatus.BLOCKED);
+            return false;
+        }
+
+        for (int siteId : variablesBySite.keySet()) {
+            addAccessedSite(transaction, currentTime, siteId);
+        }
+        return true;
     }
 
     /**
@@ -652,15 +1677,29 @@ public class TransactionManager {
      * @param operation the operation
      * @return the set of transactions that the current transaction needs to wait for
      */
-    private Set<Integer> getBlockingTransaction(Operation operation) {
-        int transactionId = operation.getTransactionId();
-        int variableId = operation.getVariableId();
-        LockType locktype;
-        if (operation.getType() == OperationType.WRITE) {
-            locktype = LockType.WRITE;
-        } else {
-            locktype = LockType.READ;
+    Set<Integer> getBlockingTransaction(Operation operation) {
+        if (operation.getType() != OperationType.SCAN && operation.getType() != OperationType.MULTI_WRITE) {
+            return getBlockingTransaction(operation, operation.getVariableId());
+        }
+        // a scan or a multi-write waits for whoever any of its variables waits for
+        Set<Integer> blockingTransactions = new HashSet<>();
+        for (int variableId : operation.getVariableIds()) {
+            if (dataLocation.containsKey(variableId)) {
+                blockingTransactions.addAll(getBlockingTransaction(operation, variableId));
+            }
         }
+        return blockingTransactions;
+    }
+
+    /**
+     * Find the blocking transactions in pending list that an operation has to wait for on one variable
+     * @param operation the operation
+     * @param variableId one of the variables the operation accesses
+     * @return the set of transactions that the current transaction needs to wait for
+     */
+    private Set<Integer> getBlockingTransaction(Operation operation, int variableId) {
+        int transactionId = operation.getTransactionId();
+        LockType locktype = operation.getLockType();
 
         Set<Integer> blockingTransactions = new HashSet<>();
         List<Pair<Integer, LockType>> list = new ArrayList<>();
@@ -671,11 +1710,11 @@ public class TransactionManager {
             if (pendingOperation == operation) {
                 return new HashSet<>();
             }
-            if (pendingOperation.getVariableId() == variableId) {
+            if (pendingOperation.covers(variableId)) {
                 if (transactions.get(pendingOperation.getTransactionId()).getType() == TransactionType.READ_ONLY) {
                     continue;
                 }
-                list.add(new Pair<>(pendingOperation.getTransactionId(), pendingOperation.getType() == OperationType.WRITE ? LockType.WRITE : LockType.READ));
+                list.add(new Pair<>(pendingOperation.getTransactionId(), pendingOperation.getLockType()));
             }
         }
 
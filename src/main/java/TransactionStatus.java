@@ -1,5 +1,5 @@
 package src.main.java;
 
 public enum TransactionStatus {
-    ACTIVE, ABORTED, COMMITED, BLOCKED
+    ACTIVE, ABORTED, COMMITED, BLOCKED, DOOMED
 }
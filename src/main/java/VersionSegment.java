@@ -0,0 +1,167 @@
+package src.main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * append-only file of the old versions spilled by the data copies of one site, mapped in memory chunk by chunk
+ * A version is a record of its commit time and value. The versions a copy spills at once are written as one run of consecutive
+ * records in commit time order, and the copy keeps where its runs start, so a snapshot lookup on disk is a binary search in one run.
+ * The file is created at the first spill and deleted by close(), or when the JVM exits if the segment is never closed.
+ */
+public class VersionSegment {
+    private static final int RECORD_BYTES = 8;
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int RECORDS_PER_CHUNK = CHUNK_BYTES / RECORD_BYTES;
+
+    private final int siteId;
+    private File file;
+    private FileChannel channel;
+    private List<MappedByteBuffer> chunks;
+    private long recordCount;
+    private long diskReads;     // the snapshot lookups that went to this file
+
+    /**
+     * @param siteId the site the segment belongs to
+     */
+    public VersionSegment(int siteId) {
+        this.siteId = siteId;
+        this.chunks = new ArrayList<>();
+    }
+
+    /**
+     * Append a run of versions
+     * side effect: will grow the file
+     * @param times the commit times, in ascending order
+     * @param values the committed values
+     * @param from the index of the first version to append
+     * @param count the number of versions to append
+     * @return the index of the first record of the run
+     */
+    public long append(int[] times, int[] values, int from, int count) {
+        long first = recordCount;
+        for (int i = from; i < from + count; i++) {
+            MappedByteBuffer chunk = chunk(recordCount);
+            int offset = (int) (recordCount % RECORDS_PER_CHUNK) * RECORD_BYTES;
+            chunk.putInt(offset, times[i]);
+            chunk.putInt(offset + 4, values[i]);
+            recordCount++;
+        }
+        return first;
+    }
+
+    /**
+     * Getting the commit time of a record
+     * @param record the record index
+     * @return the commit time
+     */
+    public int getTime(long record) {
+        return chunks.get((int) (record / RECORDS_PER_CHUNK)).getInt((int) (record % RECORDS_PER_CHUNK) * RECORD_BYTES);
+    }
+
+    /**
+     * Getting the value of a record
+     * @param record the record index
+     * @return the committed value
+     */
+    public int getValue(long record) {
+        return chunks.get((int) (record / RECORDS_PER_CHUNK)).getInt((int) (record % RECORDS_PER_CHUNK) * RECORD_BYTES + 4);
+    }
+
+    /**
+     * Find the last version of a run committed before a timestamp
+     * side effect: will count a disk read
+     * @param first the first record of the run
+     * @param count the number of records of the run
+     * @param timestamp the snapshot time
+     * @return the record index, the first record if none was committed before the timestamp
+     */
+    public long findSnapshot(long first, int count, int timestamp) {
+        diskReads++;
+        long low = first;
+        long high = first + count - 1;
+        while (low < high) {
+            long middle = (low + high + 1) >>> 1;
+            if (getTime(middle) < timestamp) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Getting the number of versions spilled to this segment
+     * @return the number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Getting the size of the spilled versions
+     * @return the bytes written
+     */
+    public long getBytes() {
+        return recordCount * RECORD_BYTES;
+    }
+
+    /**
+     * Getting the number of snapshot lookups that went to disk
+     * @return the disk reads
+     */
+    public long getDiskReads() {
+        return diskReads;
+    }
+
+    /**
+     * Close the file and delete it, will be called when the run ends
+     * The mapped chunks are dropped and unmapped once they are collected, the spilled versions can not be read anymore.
+     * side effect: will empty the segment
+     */
+    public void close() {
+        chunks.clear();
+        recordCount = 0;
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // the file is deleted either way
+        }
+        file.delete();
+        channel = null;
+        file = null;
+    }
+
+    /**
+     * Helper method for getting the chunk a record is written to, mapping a new one at the end of the file when needed
+     * side effect: might create the file and map a chunk
+     * @param record the record index
+     * @return the chunk
+     */
+    private MappedByteBuffer chunk(long record) {
+        int index = (int) (record / RECORDS_PER_CHUNK);
+        try {
+            if (channel == null) {
+                file = File.createTempFile("repcrec-site" + siteId + "-", ".versions");
+                file.deleteOnExit();
+                channel = new RandomAccessFile(file, "rw").getChannel();
+            }
+            while (chunks.size() <= index) {
+                chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * CHUNK_BYTES, CHUNK_BYTES));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("can not spill versions of site " + siteId, e);
+        }
+        return chunks.get(index);
+    }
+}
@@ -0,0 +1,109 @@
+package src.main.java;
+
+import javafx.util.Pair;
+
+import java.util.List;
+
+/**
+ * where a data manager keeps the data copies of its site that were materialized: for every variable, its versions and its type
+ * The readability of the copies is tracked by the data manager.
+ */
+public interface VersionStore {
+
+    /**
+     * Check whether the site holds a copy of a variable
+     * @param variableId the variable id
+     * @return true if a copy is held
+     */
+    boolean contains(int variableId);
+
+    /**
+     * Getting the variables held
+     * @return the variable ids
+     */
+    List<Integer> getVariableIds();
+
+    /**
+     * Getting the number of copies held
+     * @return the number of variables held
+     */
+    int size();
+
+    /**
+     * Start holding a copy of a variable with its initial value
+     * side effect: will add the copy
+     * @param variableId the variable id
+     * @param dataType REPLICATED or NOT_REPLICATED
+     * @param initialValue the value of the initial version, committed at -1
+     */
+    void create(int variableId, DataType dataType, int initialValue);
+
+    /**
+     * Getting a copy with its whole commit history, used to move it to another site or to another store
+     * @param variableId the variable id
+     * @return the data copy, null if the variable is not held
+     */
+    DataCopy export(int variableId);
+
+    /**
+     * Start holding a copy moved from another site, with its whole commit history
+     * side effect: will add or replace the copy
+     * @param variableId the variable id
+     * @param dataCopy the data copy
+     */
+    void install(int variableId, DataCopy dataCopy);
+
+    /**
+     * Stop holding the copy of a variable
+     * side effect: will remove the copy
+     * @param variableId the variable id
+     */
+    void remove(int variableId);
+
+    /**
+     * Getting the type of a copy
+     * @param variableId the variable id
+     * @return REPLICATED or NOT_REPLICATED
+     */
+    DataType getDataType(int variableId);
+
+    /**
+     * Getting the latest committed value of a copy
+     * @param variableId the variable id
+     * @return the value
+     */
+    int getLatestCommitValue(int variableId);
+
+    /**
+     * Getting the time of the latest commit of a copy
+     * @param variableId the variable id
+     * @return the commit time, -1 for the initial value
+     */
+    int getLatestCommitTime(int variableId);
+
+    /**
+     * Get the latest version of a copy committed before a timestamp
+     * @param variableId the variable id
+     * @param timestamp the beginning time of the reader
+     * @return the commit time and value, the oldest version if none was committed before the timestamp
+     */
+    Pair<Integer, Integer> getSnapshot(int variableId, int timestamp);
+
+    /**
+     * Append a committed version to a copy
+     * side effect: will change the commit history of the copy
+     * @param variableId the variable id
+     * @param time the commit time
+     * @param value the committed value
+     */
+    void commit(int variableId, int time, int value);
+
+    /**
+     * Set how many versions each copy keeps on the heap, ignored by stores that do not keep versions on the heap
+     * side effect: might spill versions
+     * @param versionSegment where the old versions are spilled
+     * @param heapVersions the most versions kept on the heap, 0 for no limit
+     */
+    default void setHeapVersions(VersionSegment versionSegment, int heapVersions) {
+    }
+}
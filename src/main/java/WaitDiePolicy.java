@@ -0,0 +1,32 @@
+package src.main.java;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * an older transaction waits for younger ones, a younger transaction that would wait for an older one dies (aborts) instead.
+ * Waits only go from older to younger transactions, so no cycle can form.
+ */
+public class WaitDiePolicy implements DeadlockPolicy {
+
+    @Override
+    public Set<Integer> onWait(TransactionManager transactionManager, int requester, Set<Integer> holders, int currentTime) {
+        int requesterBeginTime = transactionManager.getTransaction(requester).getBeginTime();
+        for (int holder : holders) {
+            if (holder != requester && transactionManager.getTransaction(holder).getBeginTime() < requesterBeginTime) {
+                return Collections.singleton(requester);
+            }
+        }
+        return Collections.emptySet();
+    }
+
+    @Override
+    public boolean onTick(TransactionManager transactionManager, int currentTime) {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "wait-die";
+    }
+}
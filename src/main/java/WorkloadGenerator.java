@@ -0,0 +1,363 @@
+package src.main.java;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Generates synthetic traces in the text syntax accepted by Database
+ * (begin, beginRO, R, W, end, fail, recover, dump), optionally with declared access sets at begin.
+ * A fixed number of transactions are in flight at any time, and every line goes to a randomly chosen one of them,
+ * which interleaves their operations the way concurrent clients would.
+ * The same configuration and seed always produce the same trace.
+ */
+public class WorkloadGenerator {
+    private static final int MAX_VARIABLES = 20;    // the engine starts with x1 to x20 on sites 1 to 10
+    private static final int MAX_SITES = 10;
+
+    private final Random random;
+    private long operations = 10000;    // the number of lines to generate before closing the remaining transactions
+    private int variables = 20;
+    private int sites = 10;
+    private double skew = 0.0;  // zipfian skew of the variable choice, 0 for uniform
+    private double readRatio = 0.5; // probability that an operation of a read-write transaction is a read
+    private double readOnlyRatio = 0.0; // probability that a new transaction is read-only
+    private LengthDistribution lengthDistribution = LengthDistribution.UNIFORM;
+    private int minLength = 1;
+    private int maxLength = 10;
+    private double meanLength = 4;  // only used by the geometric distribution
+    private int concurrency = 4;    // the number of transactions in flight
+    private double failureRate = 0.0;   // probability that a line is followed by the failure of an up site
+    private int downtime = 50;  // the number of lines a failed site stays down
+    private boolean dumpAtEnd = false;
+    private boolean declareAccess = false;  // whether read-write transactions declare their read and write sets at begin
+
+    /**
+     * Create a generator with the default configuration
+     * @param seed the random seed
+     */
+    public WorkloadGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public void setOperations(long operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Set the size of the key space, the trace only accesses x1 to xn
+     * @param variables the number of variables, at most the twenty the engine starts with
+     * @throws IllegalArgumentException if the engine could not run the trace
+     */
+    public void setVariables(int variables) {
+        if (variables < 1 || variables > MAX_VARIABLES) {
+            throw new IllegalArgumentException("-variables must be between 1 and " + MAX_VARIABLES + ", not " + variables);
+        }
+        this.variables = variables;
+    }
+
+    /**
+     * Set the number of sites the trace fails and recovers, sites 1 to n
+     * @param sites the number of sites, at most the ten the engine starts with
+     * @throws IllegalArgumentException if the engine could not run the trace
+     */
+    public void setSites(int sites) {
+        if (sites < 1 || sites > MAX_SITES) {
+            throw new IllegalArgumentException("-sites must be between 1 and " + MAX_SITES + ", not " + sites);
+        }
+        this.sites = sites;
+    }
+
+    public void setSkew(double skew) {
+        this.skew = skew;
+    }
+
+    public void setReadRatio(double readRatio) {
+        this.readRatio = readRatio;
+    }
+
+    public void setReadOnlyRatio(double readOnlyRatio) {
+        this.readOnlyRatio = readOnlyRatio;
+    }
+
+    /**
+     * Set how the number of operations of a transaction is drawn
+     * @param lengthDistribution fixed (always the maximum), uniform between the bounds, or geometric with the given mean
+     * @param minLength the minimum number of operations
+     * @param maxLength the maximum number of operations
+     * @param meanLength the mean of the geometric distribution, ignored otherwise
+     */
+    public void setLength(LengthDistribution lengthDistribution, int minLength, int maxLength, double meanLength) {
+        if (minLength < 1 || maxLength < minLength) {
+            throw new IllegalArgumentException("invalid transaction length bounds " + minLength + ":" + maxLength);
+        }
+        this.lengthDistribution = lengthDistribution;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.meanLength = meanLength;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Set the failure model
+     * @param failureRate probability that a line is followed by the failure of a random up site
+     * @param downtime the number of lines after which a failed site recovers
+     */
+    public void setFailures(double failureRate, int downtime) {
+        this.failureRate = failureRate;
+        this.downtime = downtime;
+    }
+
+    public void setDumpAtEnd(boolean dumpAtEnd) {
+        this.dumpAtEnd = dumpAtEnd;
+    }
+
+    public void setDeclareAccess(boolean declareAccess) {
+        this.declareAccess = declareAccess;
+    }
+
+    /**
+     * Write the whole trace
+     * @param out the destination
+     * @throws IOException if the destination can not be written
+     */
+    public void generate(Appendable out) throws IOException {
+        ZipfianDistribution keys = new ZipfianDistribution(variables, skew);
+
+        // per slot state of the transaction in flight, 0 means the slot is empty
+        int[] transactionIds = new int[concurrency];
+        boolean[] readOnly = new boolean[concurrency];
+        int[] lengths = new int[concurrency];
+        int[] positions = new int[concurrency];
+        int[][] operationVariables = new int[concurrency][maxLength];
+        boolean[][] operationWrites = new boolean[concurrency][maxLength];
+
+        // the line at which a down site recovers, 0 if the site is up
+        long[] recoveryLine = new long[sites + 1];
+
+        int nextTransactionId = 1;
+        long line = 0;
+        while (line < operations) {
+            int slot = random.nextInt(concurrency);
+            if (transactionIds[slot] == 0) {
+                // start a new transaction and draw all of its operations up front
+                transactionIds[slot] = nextTransactionId++;
+                readOnly[slot] = random.nextDouble() < readOnlyRatio;
+                lengths[slot] = nextLength();
+                positions[slot] = 0;
+                for (int i = 0; i < lengths[slot]; i++) {
+                    operationVariables[slot][i] = keys.next(random);
+                    operationWrites[slot][i] = !readOnly[slot] && random.nextDouble() >= readRatio;
+                }
+                out.append(readOnly[slot] ? "beginRO(T" : "begin(T").append(Integer.toString(transactionIds[slot]));
+                if (declareAccess && !readOnly[slot]) {
+                    appendAccessSet(out, 'R', operationVariables[slot], operationWrites[slot], lengths[slot], false);
+                    appendAccessSet(out, 'W', operationVariables[slot], operationWrites[slot], lengths[slot], true);
+                }
+                out.append(")\n");
+            } else if (positions[slot] < lengths[slot]) {
+                int transactionId = transactionIds[slot];
+                int variableId = operationVariables[slot][positions[slot]];
+                if (operationWrites[slot][positions[slot]]) {
+                    out.append("W(T").append(Integer.toString(transactionId)).append(",x").append(Integer.toString(variableId))
+                            .append(',').append(Integer.toString(random.nextInt(10000))).append(")\n");
+                } else {
+                    out.append("R(T").append(Integer.toString(transactionId)).append(",x").append(Integer.toString(variableId)).append(")\n");
+                }
+                positions[slot]++;
+            } else {
+                out.append("end(T").append(Integer.toString(transactionIds[slot])).append(")\n");
+                transactionIds[slot] = 0;
+            }
+            line++;
+
+            line += failAndRecover(out, recoveryLine, line);
+        }
+
+        // close every transaction still in flight and bring every site back
+        for (int slot = 0; slot < concurrency; slot++) {
+            if (transactionIds[slot] != 0) {
+                out.append("end(T").append(Integer.toString(transactionIds[slot])).append(")\n");
+            }
+        }
+        for (int siteId = 1; siteId <= sites; siteId++) {
+            if (recoveryLine[siteId] != 0) {
+                out.append("recover(").append(Integer.toString(siteId)).append(")\n");
+            }
+        }
+        if (dumpAtEnd) {
+            out.append("dump()\n");
+        }
+    }
+
+    /**
+     * Write the declared read or write set of a transaction, e.g. ",R[x1,x3]"
+     * @param out the destination
+     * @param kind 'R' or 'W'
+     * @param variables the variables of the operations of the transaction
+     * @param writes whether each operation is a write
+     * @param length the number of operations
+     * @param write true to write the write set, false for the read set
+     * @throws IOException if the destination can not be written
+     */
+    private void appendAccessSet(Appendable out, char kind, int[] variables, boolean[] writes, int length, boolean write) throws IOException {
+        out.append(',').append(kind).append('[');
+        boolean first = true;
+        for (int i = 0; i < length; i++) {
+            if (writes[i] == write) {
+                out.append(first ? "x" : ",x").append(Integer.toString(variables[i]));
+                first = false;
+            }
+        }
+        out.append(']');
+    }
+
+    /**
+     * Recover the sites whose downtime is over and possibly fail a random up site
+     * @param out the destination
+     * @param recoveryLine the line at which each down site recovers, 0 if the site is up
+     * @param line the number of lines written so far
+     * @return the number of lines written
+     * @throws IOException if the destination can not be written
+     */
+    private int failAndRecover(Appendable out, long[] recoveryLine, long line) throws IOException {
+        if (failureRate == 0) {
+            return 0;
+        }
+        int written = 0;
+        for (int siteId = 1; siteId <= sites; siteId++) {
+            if (recoveryLine[siteId] != 0 && recoveryLine[siteId] <= line) {
+                out.append("recover(").append(Integer.toString(siteId)).append(")\n");
+                recoveryLine[siteId] = 0;
+                written++;
+            }
+        }
+        if (random.nextDouble() < failureRate) {
+            int siteId = 1 + random.nextInt(sites);
+            if (recoveryLine[siteId] == 0) {
+                out.append("fail(").append(Integer.toString(siteId)).append(")\n");
+                recoveryLine[siteId] = line + written + downtime;
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Draw the number of operations of a new transaction
+     * @return the length, between minLength and maxLength
+     */
+    private int nextLength() {
+        switch (lengthDistribution) {
+            case FIXED:
+                return maxLength;
+            case GEOMETRIC:
+                {
+                    double p = 1.0 / Math.max(1.0, meanLength);
+                    int length = p >= 1.0 ? 1 : 1 + (int) (Math.log(1 - random.nextDouble()) / Math.log(1 - p));
+                    return Math.max(minLength, Math.min(maxLength, length));
+                }
+            default:
+                return minLength + random.nextInt(maxLength - minLength + 1);
+        }
+    }
+
+    /**
+     * Command line entry point, writes the trace to the output file or to std out
+     * usage: WorkloadGenerator [-o file] [-n operations] [-seed seed] [-variables n] [-sites n] [-zipf theta]
+     *        [-reads ratio] [-ro ratio] [-length min:max] [-length-dist fixed|uniform|geometric] [-length-mean mean]
+     *        [-concurrency n] [-fail rate] [-downtime lines] [-dump]
+     * @param args the arguments
+     * @throws IOException if the output can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        String outputFile = null;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-seed")) {
+                seed = Long.parseLong(args[i + 1]);
+            }
+        }
+        WorkloadGenerator generator = new WorkloadGenerator(seed);
+        LengthDistribution distribution = LengthDistribution.UNIFORM;
+        int minLength = 1;
+        int maxLength = 10;
+        double meanLength = 4;
+        double failureRate = 0;
+        int downtime = 50;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o":
+                    outputFile = args[++i];
+                    break;
+                case "-n":
+                    generator.setOperations(Long.parseLong(args[++i]));
+                    break;
+                case "-seed":
+                    i++;
+                    break;
+                case "-variables":
+                    generator.setVariables(Integer.parseInt(args[++i]));
+                    break;
+                case "-sites":
+                    generator.setSites(Integer.parseInt(args[++i]));
+                    break;
+                case "-zipf":
+                    generator.setSkew(Double.parseDouble(args[++i]));
+                    break;
+                case "-reads":
+                    generator.setReadRatio(Double.parseDouble(args[++i]));
+                    break;
+                case "-ro":
+                    generator.setReadOnlyRatio(Double.parseDouble(args[++i]));
+                    break;
+                case "-length":
+                    {
+                        String[] bounds = args[++i].split(":");
+                        minLength = Integer.parseInt(bounds[0]);
+                        maxLength = Integer.parseInt(bounds[bounds.length - 1]);
+                    }
+                    break;
+                case "-length-dist":
+                    distribution = LengthDistribution.valueOf(args[++i].toUpperCase());
+                    break;
+                case "-length-mean":
+                    meanLength = Double.parseDouble(args[++i]);
+                    break;
+                case "-concurrency":
+                    generator.setConcurrency(Integer.parseInt(args[++i]));
+                    break;
+                case "-fail":
+                    failureRate = Double.parseDouble(args[++i]);
+                    break;
+                case "-downtime":
+                    downtime = Integer.parseInt(args[++i]);
+                    break;
+                case "-dump":
+                    generator.setDumpAtEnd(true);
+                    break;
+                case "-declare":
+                    generator.setDeclareAccess(true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        generator.setLength(distribution, minLength, maxLength, meanLength);
+        generator.setFailures(failureRate, downtime);
+
+        Writer writer;
+        if (outputFile == null) {
+            writer = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        } else {
+            writer = new BufferedWriter(new FileWriter(outputFile), 1 << 16);
+        }
+        generator.generate(writer);
+        writer.flush();
+        if (outputFile != null) {
+            writer.close();
+        }
+    }
+}
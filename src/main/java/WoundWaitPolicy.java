@@ -0,0 +1,34 @@
+package src.main.java;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * an older transaction never waits for a younger one, it wounds (aborts) it instead;
+ * a younger transaction waits for older ones.
+ * Waits only go from younger to older transactions, so no cycle can form.
+ */
+public class WoundWaitPolicy implements DeadlockPolicy {
+
+    @Override
+    public Set<Integer> onWait(TransactionManager transactionManager, int requester, Set<Integer> holders, int currentTime) {
+        int requesterBeginTime = transactionManager.getTransaction(requester).getBeginTime();
+        Set<Integer> victims = new HashSet<>();
+        for (int holder : holders) {
+            if (holder != requester && transactionManager.getTransaction(holder).getBeginTime() > requesterBeginTime) {
+                victims.add(holder);
+            }
+        }
+        return victims;
+    }
+
+    @Override
+    public boolean onTick(TransactionManager transactionManager, int currentTime) {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return "wound-wait";
+    }
+}
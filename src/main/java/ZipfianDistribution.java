@@ -0,0 +1,57 @@
+package src.main.java;
+
+import java.util.Random;
+
+/**
+ * Samples ranks 1..n with probability proportional to 1 / rank^theta, so rank 1 is the hottest.
+ * A skew of 0 degenerates to the uniform distribution.
+ */
+public class ZipfianDistribution {
+    private final int n;
+    private final double[] cumulativeProbabilities;  // cumulativeProbabilities[i] : probability of drawing a rank <= i + 1
+
+    /**
+     * Precompute the cumulative distribution
+     * @param n the number of ranks
+     * @param theta the skew, 0 for uniform
+     */
+    public ZipfianDistribution(int n, double theta) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("the number of ranks must be positive");
+        }
+        if (theta < 0) {
+            throw new IllegalArgumentException("the skew can not be negative");
+        }
+        this.n = n;
+        cumulativeProbabilities = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1.0 / Math.pow(rank, theta);
+            cumulativeProbabilities[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    /**
+     * Draw a rank
+     * @param random the source of randomness
+     * @return a rank between 1 and n
+     */
+    public int next(Random random) {
+        double u = random.nextDouble();
+        // find the first rank whose cumulative probability exceeds u
+        int low = 0;
+        int high = n - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeProbabilities[middle] > u) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low + 1;
+    }
+}